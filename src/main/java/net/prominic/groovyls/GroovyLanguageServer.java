@@ -28,9 +28,12 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 
+import org.eclipse.lsp4j.ClientCapabilities;
+import org.eclipse.lsp4j.CompletionItemResolveSupportCapabilities;
 import org.eclipse.lsp4j.CompletionOptions;
 import org.eclipse.lsp4j.InitializeParams;
 import org.eclipse.lsp4j.InitializeResult;
+import org.eclipse.lsp4j.InitializedParams;
 import org.eclipse.lsp4j.ServerCapabilities;
 import org.eclipse.lsp4j.SignatureHelpOptions;
 import org.eclipse.lsp4j.TextDocumentSyncKind;
@@ -70,6 +73,13 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
 
     @Override
     public CompletableFuture<InitializeResult> initialize(InitializeParams params) {
+        ClientCapabilities clientCapabilities = params.getCapabilities();
+        groovyServices.setWorkDoneProgressSupported(clientCapabilities != null
+                && clientCapabilities.getWindow() != null
+                && Boolean.TRUE.equals(clientCapabilities.getWindow().getWorkDoneProgress()));
+        groovyServices.setResolveAdditionalTextEditsSupported(
+                isCompletionItemResolveSupported(clientCapabilities, "additionalTextEdits"));
+
         String rootUriString = params.getRootUri();
         if (rootUriString != null) {
             URI uri = URI.create(params.getRootUri());
@@ -77,7 +87,7 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
             groovyServices.setWorkspaceRoot(workspaceRoot);
         }
 
-        CompletionOptions completionOptions = new CompletionOptions(false, Arrays.asList("."));
+        CompletionOptions completionOptions = new CompletionOptions(true, Arrays.asList("."));
         ServerCapabilities serverCapabilities = new ServerCapabilities();
         serverCapabilities.setCompletionProvider(completionOptions);
         serverCapabilities.setTextDocumentSync(TextDocumentSyncKind.Full);
@@ -100,8 +110,26 @@ public class GroovyLanguageServer implements LanguageServer, LanguageClientAware
         return CompletableFuture.completedFuture(initializeResult);
     }
 
+    private boolean isCompletionItemResolveSupported(ClientCapabilities clientCapabilities, String property) {
+        if (clientCapabilities == null || clientCapabilities.getTextDocument() == null
+                || clientCapabilities.getTextDocument().getCompletion() == null
+                || clientCapabilities.getTextDocument().getCompletion().getCompletionItem() == null) {
+            return false;
+        }
+        CompletionItemResolveSupportCapabilities resolveSupport = clientCapabilities.getTextDocument().getCompletion()
+                .getCompletionItem().getResolveSupport();
+        return resolveSupport != null && resolveSupport.getProperties() != null
+                && resolveSupport.getProperties().contains(property);
+    }
+
+    @Override
+    public void initialized(InitializedParams params) {
+        groovyServices.clientInitialized();
+    }
+
     @Override
     public CompletableFuture<Object> shutdown() {
+        groovyServices.shutdown();
         return CompletableFuture.completedFuture(new Object());
     }
 
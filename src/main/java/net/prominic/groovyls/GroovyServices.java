@@ -19,20 +19,28 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls;
 
-import java.io.File;
-import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -42,7 +50,10 @@ import com.google.gson.JsonObject;
 
 import org.codehaus.groovy.GroovyBugError;
 import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.CompileUnit;
+import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.ErrorCollector;
 import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.messages.Message;
@@ -79,24 +90,28 @@ import org.eclipse.lsp4j.RenameParams;
 import org.eclipse.lsp4j.SignatureHelp;
 import org.eclipse.lsp4j.SignatureHelpParams;
 import org.eclipse.lsp4j.SymbolInformation;
-import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextEdit;
 import org.eclipse.lsp4j.TypeDefinitionParams;
-import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.WorkspaceEdit;
 import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.lsp4j.services.LanguageClientAware;
 import org.eclipse.lsp4j.services.TextDocumentService;
 import org.eclipse.lsp4j.services.WorkspaceService;
 
 import groovy.lang.GroovyClassLoader;
-import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ClassGraphException;
-import io.github.classgraph.ScanResult;
+import net.prominic.groovyls.classpath.ClasspathCache;
+import net.prominic.groovyls.classpath.ClasspathIndex;
+import net.prominic.groovyls.classpath.ClasspathScanner;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.ast.SourceDependencyGraph;
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
 import net.prominic.groovyls.config.ICompilationUnitFactory;
 import net.prominic.groovyls.providers.CodeActionProvider;
@@ -110,33 +125,146 @@ import net.prominic.groovyls.providers.RenameProvider;
 import net.prominic.groovyls.providers.SignatureHelpProvider;
 import net.prominic.groovyls.providers.TypeDefinitionProvider;
 import net.prominic.groovyls.providers.WorkspaceSymbolProvider;
+import net.prominic.groovyls.util.CompileScheduler;
 import net.prominic.groovyls.util.FileContentsTracker;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
+import net.prominic.groovyls.util.ProgressReporter;
+import net.prominic.groovyls.util.RequestDispatcher;
+import net.prominic.groovyls.util.RequestDispatcher.Priority;
 import net.prominic.lsp.utils.Positions;
 
 public class GroovyServices implements TextDocumentService, WorkspaceService, LanguageClientAware {
 	private static final Pattern PATTERN_CONSTRUCTOR_CALL = Pattern.compile(".*new \\w*$");
 
+	private static class DocumentState {
+		// both are null if the file was compiled from disk
+		public Integer version;
+		// strings are immutable, so this is shared with the tracker
+		public String contents;
+	}
+
+	private static class ParsedState {
+		// the version of the contents that were parsed
+		public Integer version;
+		// only the parsed file is visited, and classes aren't resolved
+		public ASTNodeVisitor visitor;
+	}
+
+	private static class CompletionState {
+		public URI uri;
+		// the contents when the completion was computed
+		public String contents;
+		public int prefixStart;
+		public String prefix;
+		public CompletionProvider provider;
+	}
+
 	private LanguageClient languageClient;
 
 	private Path workspaceRoot;
 	private ICompilationUnitFactory compilationUnitFactory;
 	private GroovyLSCompilationUnit compilationUnit;
-	private ASTNodeVisitor astVisitor;
+	// each version is published once it's complete, and never modified
+	private volatile ASTNodeVisitor astVisitor;
+	private SourceDependencyGraph dependencyGraph = new SourceDependencyGraph();
 	private Map<URI, List<Diagnostic>> prevDiagnosticsByFile;
 	private FileContentsTracker fileContentsTracker = new FileContentsTracker();
-	private ScanResult classGraphScanResult = null;
+	private ClasspathScanner classpathScanner;
+	// completes when the background scan of the current classpath finishes,
+	// or with null if there's no classpath to scan
+	private volatile CompletableFuture<ClasspathIndex> classpathIndexFuture = CompletableFuture.completedFuture(null);
+	private Future<?> classpathScanTask = null;
+	private int classpathScanCount = 0;
+	private Executor classpathExecutor;
+	// only shut down if it was created here
+	private ExecutorService ownedClasspathExecutor = null;
+	private volatile boolean workDoneProgressSupported = false;
+	// requests may not be sent to the client until it's initialized
+	private volatile boolean clientInitialized = false;
+	private volatile ProgressReporter classpathProgress = null;
+	// the last completion may be narrowed while the user keeps typing
+	private volatile CompletionState lastCompletion = null;
+	// resolves the items of the last completion
+	private volatile CompletionProvider lastCompletionProvider = null;
+	private boolean resolveAdditionalTextEditsSupported = false;
 	private GroovyClassLoader classLoader = null;
-	private URI previousContext = null;
 	private CodeActionProvider codeActionProvider = null;
+	private CompileScheduler compileScheduler = new CompileScheduler(this::compileAndVisitAST);
+	// files that were parsed after a change, until they're compiled
+	private Map<URI, ParsedState> parsedStates = new ConcurrentHashMap<>();
+	private Set<URI> pendingParseURIs = ConcurrentHashMap.newKeySet();
+	private Map<URI, DocumentState> compiledStates = new HashMap<>();
+	private Map<URI, DocumentState> capturedStates = new HashMap<>();
+	private boolean needsFullVisit = false;
+	private RequestDispatcher requestDispatcher = new RequestDispatcher("groovyls-request", 1);
+	private RequestDispatcher readDispatcher = new RequestDispatcher("groovyls-read",
+			Math.max(2, Runtime.getRuntime().availableProcessors()));
 
 	public GroovyServices(ICompilationUnitFactory factory) {
+		this(factory, new ClasspathScanner(new ClasspathCache()), null);
+	}
+
+	/**
+	 * The classpath is scanned with the executor, or with a new background
+	 * thread if it's null.
+	 */
+	public GroovyServices(ICompilationUnitFactory factory, ClasspathScanner classpathScanner,
+			Executor classpathExecutor) {
 		compilationUnitFactory = factory;
+		this.classpathScanner = classpathScanner;
+		if (classpathExecutor == null) {
+			ownedClasspathExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "groovyls-classpath");
+				thread.setDaemon(true);
+				return thread;
+			});
+			classpathExecutor = ownedClasspathExecutor;
+		}
+		this.classpathExecutor = classpathExecutor;
 	}
 
 	public void setWorkspaceRoot(Path workspaceRoot) {
 		this.workspaceRoot = workspaceRoot;
-		createOrUpdateCompilationUnit();
+		compileScheduler.runExclusive(() -> {
+			createOrUpdateCompilationUnit();
+		});
+	}
+
+	/**
+	 * If the client supports it, the progress of long running tasks, like
+	 * scanning the classpath, is reported.
+	 */
+	public void setWorkDoneProgressSupported(boolean workDoneProgressSupported) {
+		this.workDoneProgressSupported = workDoneProgressSupported;
+	}
+
+	/**
+	 * Called when the client is ready to receive requests from the server,
+	 * like the one that creates a progress token.
+	 */
+	public void clientInitialized() {
+		clientInitialized = true;
+		ProgressReporter progress = classpathProgress;
+		if (progress != null) {
+			progress.update();
+		}
+	}
+
+	/**
+	 * If the client supports it, the edits that add imports aren't included in
+	 * the completion items until they're resolved.
+	 */
+	public void setResolveAdditionalTextEditsSupported(boolean resolveAdditionalTextEditsSupported) {
+		this.resolveAdditionalTextEditsSupported = resolveAdditionalTextEditsSupported;
+	}
+
+	public void shutdown() {
+		compileScheduler.shutdown();
+		if (ownedClasspathExecutor != null) {
+			ownedClasspathExecutor.shutdownNow();
+		}
+		requestDispatcher.shutdown();
+		readDispatcher.shutdown();
 	}
 
 	@Override
@@ -150,21 +278,47 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	public void didOpen(DidOpenTextDocumentParams params) {
 		fileContentsTracker.didOpen(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		lastCompletion = null;
+		parsedStates.remove(uri);
+		compileScheduler.schedule(uri);
 	}
 
 	@Override
 	public void didChange(DidChangeTextDocumentParams params) {
+		URI uri = URI.create(params.getTextDocument().getUri());
+		CompletionState completionState = lastCompletion;
+		if (completionState != null && !completionState.uri.equals(uri)) {
+			// changes to the same file are checked when narrowing instead
+			lastCompletion = null;
+		}
+		updateContents(params);
+		// parsing a single file is fast, so it's parsed right away, but not on
+		// the thread that reads messages. if a compile is already in progress,
+		// it'll be updated after the next one instead.
+		if (pendingParseURIs.add(uri)) {
+			requestDispatcher.execute(Priority.HIGH, () -> {
+				pendingParseURIs.remove(uri);
+				compileScheduler.tryRunExclusive(() -> {
+					parseAndVisitAST(uri);
+				});
+			});
+		}
+	}
+
+	private void updateContents(DidChangeTextDocumentParams params) {
 		fileContentsTracker.didChange(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		parsedStates.remove(uri);
+		compileScheduler.schedule(uri);
 	}
 
 	@Override
 	public void didClose(DidCloseTextDocumentParams params) {
 		fileContentsTracker.didClose(params);
 		URI uri = URI.create(params.getTextDocument().getUri());
-		compileAndVisitAST(uri);
+		lastCompletion = null;
+		parsedStates.remove(uri);
+		compileScheduler.schedule(uri);
 	}
 
 	@Override
@@ -174,15 +328,13 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 
 	@Override
 	public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
-		boolean isSameUnit = createOrUpdateCompilationUnit();
 		Set<URI> urisWithChanges = params.getChanges().stream().map(fileEvent -> URI.create(fileEvent.getUri()))
 				.collect(Collectors.toSet());
-		compile();
-		if (isSameUnit) {
-			visitAST(urisWithChanges);
-		} else {
-			visitAST();
-		}
+		lastCompletion = null;
+		compileScheduler.runExclusive(() -> {
+			Set<URI> affectedURIs = compilationUnitFactory.updateWorkspaceURIs(workspaceRoot, urisWithChanges);
+			compileAndVisitAST(affectedURIs, null);
+		});
 	}
 
 	@Override
@@ -191,9 +343,24 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 			return;
 		}
 		JsonObject settings = (JsonObject) params.getSettings();
+		this.updateCompileDelay(settings);
 		this.updateClasspath(settings);
 	}
 
+	private void updateCompileDelay(JsonObject settings) {
+		long compileDelay = CompileScheduler.DEFAULT_QUIET_PERIOD;
+
+		if (settings.has("groovy") && settings.get("groovy").isJsonObject()) {
+			JsonObject groovy = settings.get("groovy").getAsJsonObject();
+			if (groovy.has("compileDelay") && groovy.get("compileDelay").isJsonPrimitive()
+					&& groovy.get("compileDelay").getAsJsonPrimitive().isNumber()) {
+				compileDelay = groovy.get("compileDelay").getAsLong();
+			}
+		}
+
+		compileScheduler.setQuietPeriod(compileDelay);
+	}
+
 	private void updateClasspath(JsonObject settings) {
 		List<String> classpathList = new ArrayList<>();
 
@@ -208,12 +375,13 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		}
 
 		if (!classpathList.equals(compilationUnitFactory.getAdditionalClasspathList())) {
-			compilationUnitFactory.setAdditionalClasspathList(classpathList);
+			compileScheduler.runExclusive(() -> {
+				compilationUnitFactory.setAdditionalClasspathList(classpathList);
 
-			createOrUpdateCompilationUnit();
-			compile();
-			visitAST();
-			previousContext = null;
+				createOrUpdateCompilationUnit();
+				compile(null);
+				visitAST(null);
+			});
 		}
 	}
 
@@ -222,10 +390,12 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	@Override
 	public CompletableFuture<Hover> hover(HoverParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		return computeAsync(Priority.HIGH, uri, cancelChecker -> {
+			recompileIfChanged(uri, cancelChecker);
 
-		HoverProvider provider = new HoverProvider(astVisitor);
-		return provider.provideHover(params.getTextDocument(), params.getPosition());
+			HoverProvider provider = new HoverProvider(astVisitor);
+			return () -> provider.provideHover(params.getTextDocument(), params.getPosition(), cancelChecker);
+		});
 	}
 
 	@Override
@@ -234,52 +404,76 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		Position position = params.getPosition();
 		URI uri = URI.create(textDocument.getUri());
 
-		recompileIfContextChanged(uri);
-
-		String originalSource = null;
-		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
-		if (offsetNode == null) {
-			originalSource = fileContentsTracker.getContents(uri);
-			VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-					textDocument.getUri(), 1);
-			int offset = Positions.getOffset(originalSource, position);
-			String lineBeforeOffset = originalSource.substring(offset - position.getCharacter(), offset);
-			Matcher matcher = PATTERN_CONSTRUCTOR_CALL.matcher(lineBeforeOffset);
-			TextDocumentContentChangeEvent changeEvent = null;
-			if (matcher.matches()) {
-				changeEvent = new TextDocumentContentChangeEvent(new Range(position, position), 0, "a()");
-			} else {
-				changeEvent = new TextDocumentContentChangeEvent(new Range(position, position), 0, "a");
+		return computeAsync(Priority.HIGH, uri, cancelChecker -> {
+			CompletionState completionState = lastCompletion;
+			String narrowedPrefix = getNarrowedCompletionPrefix(completionState, uri, position);
+			if (narrowedPrefix != null) {
+				// the user typed more of the same name since the last
+				// completion, so its results are filtered instead, without
+				// compiling again
+				CompletionProvider provider = completionState.provider;
+				lastCompletionProvider = provider;
+				return () -> provider.provideNarrowedCompletion(narrowedPrefix, cancelChecker);
 			}
-			DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-					Collections.singletonList(changeEvent));
-			// if the offset node is null, there is probably a syntax error.
-			// a completion request is usually triggered by the . character, and
-			// if there is no property name after the dot, it will cause a syntax
-			// error.
-			// this hack adds a placeholder property name in the hopes that it
-			// will correctly create a PropertyExpression to use for completion.
-			// we'll restore the original text after we're done handling the
-			// completion request.
-			didChange(didChangeParams);
-		}
-
-		CompletableFuture<Either<List<CompletionItem>, CompletionList>> result = null;
-		try {
-			CompletionProvider provider = new CompletionProvider(astVisitor, classGraphScanResult);
-			result = provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext());
-		} finally {
-			if (originalSource != null) {
-				VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-						textDocument.getUri(), 1);
-				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(null, 0,
-						originalSource);
-				DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-						Collections.singletonList(changeEvent));
-				didChange(didChangeParams);
+
+			recompileIfChanged(uri, cancelChecker);
+			String contents = fileContentsTracker.getContents(uri);
+
+			ASTNodeVisitor visitor = astVisitor;
+			ASTNode offsetNode = visitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
+			if (offsetNode == null) {
+				String originalSource = contents;
+				int offset = Positions.getOffset(originalSource, position);
+				String lineBeforeOffset = originalSource.substring(offset - position.getCharacter(), offset);
+				Matcher matcher = PATTERN_CONSTRUCTOR_CALL.matcher(lineBeforeOffset);
+				String placeholder = matcher.matches() ? "a()" : "a";
+				// if the offset node is null, there is probably a syntax error.
+				// a completion request is usually triggered by the . character, and
+				// if there is no property name after the dot, it will cause a syntax
+				// error.
+				// this hack compiles a copy of the file with a placeholder property
+				// name in the hopes that it will correctly create a
+				// PropertyExpression to use for completion. the original file and
+				// the shared AST are not modified.
+				String patchedSource = originalSource.substring(0, offset) + placeholder
+						+ originalSource.substring(offset);
+				visitor = compileSpeculatively(uri, patchedSource, cancelChecker);
 			}
-		}
 
+			CompletableFuture<ClasspathIndex> classpathFuture = classpathIndexFuture;
+			// if the scan finishes in between, it's still complete
+			boolean isClasspathPending = !classpathFuture.isDone();
+			CompletionProvider provider = new CompletionProvider(visitor, classpathFuture.getNow(null),
+					isClasspathPending, resolveAdditionalTextEditsSupported);
+			return () -> provider.provideCompletion(params.getTextDocument(), params.getPosition(), params.getContext(),
+					cancelChecker).thenApply(result -> {
+						lastCompletionProvider = provider;
+						if (!isClasspathPending) {
+							updateCompletionState(uri, contents, position, provider);
+						}
+						return result;
+					});
+		});
+	}
+
+	@Override
+	public CompletableFuture<CompletionItem> resolveCompletionItem(CompletionItem unresolved) {
+		CompletionProvider provider = lastCompletionProvider;
+		if (provider == null) {
+			return CompletableFuture.completedFuture(unresolved);
+		}
+		// the provider already has everything that it needs, so this doesn't
+		// wait for the compiler like other requests
+		CompletableFuture<CompletionItem> result = new CompletableFuture<>();
+		readDispatcher.execute(Priority.HIGH, () -> {
+			try {
+				result.complete(provider.resolveCompletionItem(unresolved).join());
+			} catch (CompletionException e) {
+				result.completeExceptionally(e.getCause());
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			}
+		});
 		return result;
 	}
 
@@ -287,10 +481,12 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> definition(
 			DefinitionParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		return computeAsync(Priority.NORMAL, uri, cancelChecker -> {
+			recompileIfChanged(uri, cancelChecker);
 
-		DefinitionProvider provider = new DefinitionProvider(astVisitor);
-		return provider.provideDefinition(params.getTextDocument(), params.getPosition());
+			DefinitionProvider provider = new DefinitionProvider(astVisitor);
+			return () -> provider.provideDefinition(params.getTextDocument(), params.getPosition(), cancelChecker);
+		});
 	}
 
 	@Override
@@ -299,226 +495,585 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 		Position position = params.getPosition();
 		URI uri = URI.create(textDocument.getUri());
 
-		recompileIfContextChanged(uri);
-
-		String originalSource = null;
-		ASTNode offsetNode = astVisitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
-		if (offsetNode == null) {
-			originalSource = fileContentsTracker.getContents(uri);
-			VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-					textDocument.getUri(), 1);
-			TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
-					new Range(position, position), 0, ")");
-			DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-					Collections.singletonList(changeEvent));
-			// if the offset node is null, there is probably a syntax error.
-			// a signature help request is usually triggered by the ( character,
-			// and if there is no matching ), it will cause a syntax error.
-			// this hack adds a placeholder ) character in the hopes that it
-			// will correctly create a ArgumentListExpression to use for
-			// signature help.
-			// we'll restore the original text after we're done handling the
-			// signature help request.
-			didChange(didChangeParams);
-		}
-
-		try {
-			SignatureHelpProvider provider = new SignatureHelpProvider(astVisitor);
-			return provider.provideSignatureHelp(params.getTextDocument(), params.getPosition());
-		} finally {
-			if (originalSource != null) {
-				VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(
-						textDocument.getUri(), 1);
-				TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(null, 0,
-						originalSource);
-				DidChangeTextDocumentParams didChangeParams = new DidChangeTextDocumentParams(versionedTextDocument,
-						Collections.singletonList(changeEvent));
-				didChange(didChangeParams);
+		return computeAsync(Priority.HIGH, uri, cancelChecker -> {
+			recompileIfChanged(uri, cancelChecker);
+
+			ASTNodeVisitor visitor = astVisitor;
+			ASTNode offsetNode = visitor.getNodeAtLineAndColumn(uri, position.getLine(), position.getCharacter());
+			if (offsetNode == null) {
+				String originalSource = fileContentsTracker.getContents(uri);
+				int offset = Positions.getOffset(originalSource, position);
+				// if the offset node is null, there is probably a syntax error.
+				// a signature help request is usually triggered by the ( character,
+				// and if there is no matching ), it will cause a syntax error.
+				// this hack compiles a copy of the file with a placeholder )
+				// character in the hopes that it will correctly create a
+				// ArgumentListExpression to use for signature help. the original
+				// file and the shared AST are not modified.
+				String patchedSource = originalSource.substring(0, offset) + ")" + originalSource.substring(offset);
+				visitor = compileSpeculatively(uri, patchedSource, cancelChecker);
 			}
-		}
+
+			SignatureHelpProvider provider = new SignatureHelpProvider(visitor);
+			return () -> provider.provideSignatureHelp(params.getTextDocument(), params.getPosition(), cancelChecker);
+		});
 	}
 
 	@Override
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> typeDefinition(
 			TypeDefinitionParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		return computeAsync(Priority.NORMAL, uri, cancelChecker -> {
+			recompileIfChanged(uri, cancelChecker);
 
-		TypeDefinitionProvider provider = new TypeDefinitionProvider(astVisitor);
-		return provider.provideTypeDefinition(params.getTextDocument(), params.getPosition());
+			TypeDefinitionProvider provider = new TypeDefinitionProvider(astVisitor);
+			return () -> provider.provideTypeDefinition(params.getTextDocument(), params.getPosition(), cancelChecker);
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<? extends Location>> references(ReferenceParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		return computeAsync(Priority.LOW, uri, cancelChecker -> {
+			recompileIfChanged(uri, cancelChecker);
 
-		ReferenceProvider provider = new ReferenceProvider(astVisitor);
-		return provider.provideReferences(params.getTextDocument(), params.getPosition());
+			ReferenceProvider provider = new ReferenceProvider(astVisitor);
+			return () -> provider.provideReferences(params.getTextDocument(), params.getPosition(), cancelChecker);
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> documentSymbol(
 			DocumentSymbolParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		return computeAsync(Priority.NORMAL, uri, cancelChecker -> {
+			ASTNodeVisitor visitor = astVisitor;
+			ParsedState parsedState = parsedStates.get(uri);
+			Integer version = fileContentsTracker.getVersion(uri);
+			if (parsedState != null && version != null && version.equals(parsedState.version)) {
+				// symbols don't need resolved classes, so there's no need to
+				// wait for the next compile
+				visitor = parsedState.visitor;
+			} else {
+				recompileIfChanged(uri, cancelChecker);
+				visitor = astVisitor;
+			}
 
-		DocumentSymbolProvider provider = new DocumentSymbolProvider(astVisitor);
-		return provider.provideDocumentSymbols(params.getTextDocument());
+			DocumentSymbolProvider provider = new DocumentSymbolProvider(visitor);
+			return () -> provider.provideDocumentSymbols(params.getTextDocument(), cancelChecker);
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<? extends SymbolInformation>> symbol(WorkspaceSymbolParams params) {
-		WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(astVisitor);
-		return provider.provideWorkspaceSymbols(params.getQuery());
+		return computeAsync(Priority.LOW, null, cancelChecker -> {
+			compileScheduler.flush(cancelChecker);
+
+			WorkspaceSymbolProvider provider = new WorkspaceSymbolProvider(astVisitor);
+			return () -> provider.provideWorkspaceSymbols(params.getQuery(), cancelChecker);
+		});
 	}
 
 	@Override
 	public CompletableFuture<WorkspaceEdit> rename(RenameParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		return computeAsync(Priority.LOW, uri, cancelChecker -> {
+			recompileIfChanged(uri, cancelChecker);
 
-		RenameProvider provider = new RenameProvider(astVisitor, fileContentsTracker);
-		return provider.provideRename(params);
+			RenameProvider provider = new RenameProvider(astVisitor, fileContentsTracker);
+			return () -> provider.provideRename(params, cancelChecker);
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<Either<Command, CodeAction>>> codeAction(CodeActionParams params) {
-		if (codeActionProvider == null || astVisitor == null) {
-			URI uri = URI.create(params.getTextDocument().getUri());
-			recompileIfContextChanged(uri);
-			codeActionProvider = new CodeActionProvider(astVisitor, fileContentsTracker);
-		}
-		return codeActionProvider.provideCodeActions(params);
+		URI uri = URI.create(params.getTextDocument().getUri());
+		return computeAsync(Priority.NORMAL, uri, cancelChecker -> {
+			compileScheduler.flush(cancelChecker);
+			if (codeActionProvider == null || astVisitor == null) {
+				recompileIfChanged(uri, cancelChecker);
+				codeActionProvider = new CodeActionProvider(astVisitor, fileContentsTracker);
+			}
+			CodeActionProvider provider = codeActionProvider;
+			return () -> provider.provideCodeActions(params, cancelChecker);
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<? extends TextEdit>> formatting(DocumentFormattingParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		return computeAsync(Priority.LOW, uri, cancelChecker -> {
+			recompileIfChanged(uri, cancelChecker);
 
-		DocumentFormattingProvider provider = new DocumentFormattingProvider(fileContentsTracker);
-		return provider.provideFormatting(params.getTextDocument(), params.getOptions());
+			DocumentFormattingProvider provider = new DocumentFormattingProvider(fileContentsTracker);
+			return () -> provider.provideFormatting(params.getTextDocument(), params.getOptions(), cancelChecker);
+		});
 	}
 
 	@Override
 	public CompletableFuture<List<? extends TextEdit>> rangeFormatting(DocumentRangeFormattingParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
-		recompileIfContextChanged(uri);
+		return computeAsync(Priority.LOW, uri, cancelChecker -> {
+			recompileIfChanged(uri, cancelChecker);
 
-		DocumentFormattingProvider provider = new DocumentFormattingProvider(fileContentsTracker);
-		return provider.provideRangeFormatting(params.getTextDocument(), params.getRange(), params.getOptions());
+			DocumentFormattingProvider provider = new DocumentFormattingProvider(fileContentsTracker);
+			return () -> provider.provideRangeFormatting(params.getTextDocument(), params.getRange(), params.getOptions(),
+					cancelChecker);
+		});
 	}
 
 	// --- INTERNAL
 
-	private void visitAST() {
+	private void updateCompletionState(URI uri, String contents, Position position, CompletionProvider provider) {
+		int offset = contents != null ? Positions.getOffset(contents, position) : -1;
+		if (offset < 0 || offset > contents.length()) {
+			return;
+		}
+		int prefixStart = getIdentifierStart(contents, offset);
+		String prefix = contents.substring(prefixStart, offset);
+		if (!prefix.equals(provider.getNarrowablePrefix())) {
+			// the provider didn't complete the name that ends at the position
+			return;
+		}
+		CompletionState completionState = new CompletionState();
+		completionState.uri = uri;
+		completionState.contents = contents;
+		completionState.prefixStart = prefixStart;
+		completionState.prefix = prefix;
+		completionState.provider = provider;
+		lastCompletion = completionState;
+	}
+
+	/**
+	 * Returns the new prefix if the only change since the last completion is
+	 * that more characters of the same name were typed, or null if the
+	 * completion must be computed again.
+	 */
+	private String getNarrowedCompletionPrefix(CompletionState completionState, URI uri, Position position) {
+		if (completionState == null || !completionState.uri.equals(uri)) {
+			return null;
+		}
+		String contents = fileContentsTracker.getContents(uri);
+		int offset = contents != null ? Positions.getOffset(contents, position) : -1;
+		if (offset < 0 || offset > contents.length()) {
+			return null;
+		}
+		int prefixStart = getIdentifierStart(contents, offset);
+		if (prefixStart != completionState.prefixStart) {
+			return null;
+		}
+		String prefix = contents.substring(prefixStart, offset);
+		if (!prefix.startsWith(completionState.prefix) || !completionState.provider.canNarrow(prefix)) {
+			return null;
+		}
+		String oldContents = completionState.contents;
+		int oldPrefixEnd = prefixStart + completionState.prefix.length();
+		int suffixLength = oldContents.length() - oldPrefixEnd;
+		if (contents.length() != offset + suffixLength || !contents.regionMatches(0, oldContents, 0, prefixStart)
+				|| !contents.regionMatches(offset, oldContents, oldPrefixEnd, suffixLength)) {
+			return null;
+		}
+		return prefix;
+	}
+
+	private static int getIdentifierStart(String contents, int offset) {
+		int start = offset;
+		while (start > 0 && Character.isJavaIdentifierPart(contents.charAt(start - 1))) {
+			start--;
+		}
+		return start;
+	}
+
+	/**
+	 * If the document has changed since the request was received, the result
+	 * would no longer match what the user sees, so the request is dropped.
+	 * The uri may be null if the request isn't associated with a document.
+	 */
+	private <T> CompletableFuture<T> computeAsync(Priority priority, URI uri,
+			Function<CancelChecker, Supplier<CompletableFuture<T>>> request) {
+		Integer version = (uri != null) ? fileContentsTracker.getVersion(uri) : null;
+		CompletableFuture<T> result = new CompletableFuture<>();
+		CancelChecker cancelChecker = () -> {
+			if (result.isCancelled()) {
+				throw new CancellationException();
+			}
+		};
+		Runnable checkModified = () -> {
+			if (version != null && !version.equals(fileContentsTracker.getVersion(uri))) {
+				throw new ResponseErrorException(new ResponseError(ResponseErrorCode.ContentModified,
+						"Document was modified: " + uri, null));
+			}
+		};
+		// anything that may compile runs one request at a time, on a
+		// separate thread so that the client may cancel it while it's in
+		// progress. the provider that it returns only reads the published
+		// snapshot, so it runs on a worker thread instead, and a slow one
+		// doesn't hold up the requests behind it.
+		requestDispatcher.execute(priority, () -> {
+			try {
+				Supplier<CompletableFuture<T>> read = compileScheduler.callExclusive(() -> {
+					cancelChecker.checkCanceled();
+					checkModified.run();
+					return request.apply(cancelChecker);
+				});
+				readDispatcher.execute(priority, () -> {
+					try {
+						cancelChecker.checkCanceled();
+						checkModified.run();
+						result.complete(read.get().join());
+					} catch (CompletionException e) {
+						result.completeExceptionally(e.getCause());
+					} catch (Throwable e) {
+						result.completeExceptionally(e);
+					}
+				});
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	private void visitAST(CancelChecker cancelChecker) {
 		if (compilationUnit == null) {
 			return;
 		}
-		astVisitor = new ASTNodeVisitor();
-		astVisitor.visitCompilationUnit(compilationUnit);
+		ASTNodeVisitor newASTVisitor = new ASTNodeVisitor();
+		newASTVisitor.visitCompilationUnit(compilationUnit, cancelChecker);
+		astVisitor = newASTVisitor;
+		needsFullVisit = false;
+		parsedStates.clear();
+		dependencyGraph.clear();
+		compiledStates.clear();
+		compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+			URI uri = sourceUnit.getSource().getURI();
+			dependencyGraph.update(uri, astVisitor);
+			updateCompiledState(uri);
+		});
 		// Reset provider when AST changes
 		codeActionProvider = null;
 	}
 
-	private void visitAST(Set<URI> uris) {
-		if (astVisitor == null) {
-			visitAST();
+	private void visitAST(Set<URI> uris, CancelChecker cancelChecker) {
+		if (astVisitor == null || needsFullVisit) {
+			visitAST(cancelChecker);
 			return;
 		}
 		if (compilationUnit == null) {
 			return;
 		}
-		astVisitor.visitCompilationUnit(compilationUnit, uris);
+		ASTNodeVisitor newASTVisitor = astVisitor.copy();
+		newASTVisitor.visitCompilationUnit(compilationUnit, uris, cancelChecker);
+		astVisitor = newASTVisitor;
+		codeActionProvider = null;
+		uris.forEach(uri -> {
+			parsedStates.remove(uri);
+			dependencyGraph.update(uri, newASTVisitor);
+			updateCompiledState(uri);
+		});
 	}
 
 	private boolean createOrUpdateCompilationUnit() {
-		if (compilationUnit != null) {
-			File targetDirectory = compilationUnit.getConfiguration().getTargetDirectory();
-			if (targetDirectory != null && targetDirectory.exists()) {
-				try {
-					Files.walk(targetDirectory.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile)
-							.forEach(File::delete);
-				} catch (IOException e) {
-					System.err.println("Failed to delete target directory: " + targetDirectory.getAbsolutePath());
-					compilationUnit = null;
-					return false;
-				}
-			}
-		}
-
 		GroovyLSCompilationUnit oldCompilationUnit = compilationUnit;
+		// capture the states before the contents are read, so that a change
+		// received in the meantime is never mistaken for being compiled
+		capturedStates.clear();
+		fileContentsTracker.getOpenURIs().forEach(uri -> {
+			capturedStates.put(uri, captureState(uri));
+		});
 		compilationUnit = compilationUnitFactory.create(workspaceRoot, fileContentsTracker);
 		fileContentsTracker.resetChangedFiles();
 
 		if (compilationUnit != null) {
-			File targetDirectory = compilationUnit.getConfiguration().getTargetDirectory();
-			if (targetDirectory != null && !targetDirectory.exists() && !targetDirectory.mkdirs()) {
-				System.err.println("Failed to create target directory: " + targetDirectory.getAbsolutePath());
-			}
 			GroovyClassLoader newClassLoader = compilationUnit.getClassLoader();
 			if (!newClassLoader.equals(classLoader)) {
 				classLoader = newClassLoader;
 
-				try {
-					classGraphScanResult = new ClassGraph().overrideClassLoaders(classLoader).enableClassInfo()
-							.enableSystemJarsAndModules()
-							.scan();
-				} catch (ClassGraphException e) {
-					classGraphScanResult = null;
-				}
+				scanClasspath(classLoader);
 			}
 		} else {
-			classGraphScanResult = null;
+			cancelClasspathScan();
+			classpathIndexFuture = CompletableFuture.completedFuture(null);
 		}
 
 		return compilationUnit != null && compilationUnit.equals(oldCompilationUnit);
 	}
 
-	protected void recompileIfContextChanged(URI newContext) {
-		if (previousContext == null || previousContext.equals(newContext)) {
+	private void scanClasspath(ClassLoader classLoaderToScan) {
+		cancelClasspathScan();
+		lastCompletion = null;
+		CompletableFuture<ClasspathIndex> future = new CompletableFuture<>();
+		classpathIndexFuture = future;
+		classpathScanCount++;
+		ProgressReporter progress = null;
+		if (languageClient != null) {
+			progress = new ProgressReporter(languageClient, "groovyls-classpath-" + classpathScanCount,
+					"Scanning classpath", () -> workDoneProgressSupported && clientInitialized);
+		}
+		ProgressReporter scanProgress = progress;
+		classpathProgress = scanProgress;
+		// scanning may take a while the first time, so it shouldn't block
+		// opening files. completion returns incomplete results until it's
+		// finished.
+		FutureTask<Void> scanTask = new FutureTask<>(() -> {
+			ClasspathIndex result = null;
+			try {
+				result = classpathScanner.scan(classLoaderToScan, (completed, total) -> {
+					if (scanProgress != null) {
+						scanProgress.report(completed * 100 / total);
+					}
+				});
+			} catch (ClassGraphException e) {
+				System.err.println("Failed to scan classpath: " + e.getMessage());
+			} catch (CancellationException e) {
+				// a new classpath is being scanned instead
+			} finally {
+				if (scanProgress != null) {
+					scanProgress.end();
+				}
+				future.complete(result);
+			}
+		}, null);
+		classpathScanTask = scanTask;
+		classpathExecutor.execute(scanTask);
+	}
+
+	private void cancelClasspathScan() {
+		if (classpathScanTask != null) {
+			classpathScanTask.cancel(true);
+			classpathScanTask = null;
+		}
+	}
+
+	protected void recompileIfChanged(URI uri, CancelChecker cancelChecker) {
+		// requests always see the latest changes
+		compileScheduler.flush(cancelChecker);
+		if (isUpToDate(uri)) {
 			return;
 		}
-		fileContentsTracker.forceChanged(newContext);
-		compileAndVisitAST(newContext);
+		compileAndVisitAST(Collections.singleton(uri), cancelChecker);
 	}
 
-	private void compileAndVisitAST(URI contextURI) {
-		Set<URI> uris = Collections.singleton(contextURI);
-		boolean isSameUnit = createOrUpdateCompilationUnit();
-		compile();
-		if (isSameUnit) {
-			visitAST(uris);
-		} else {
-			visitAST();
+	private boolean isUpToDate(URI uri) {
+		DocumentState compiledState = compiledStates.get(uri);
+		if (compiledState == null) {
+			return false;
+		}
+		Integer version = fileContentsTracker.getVersion(uri);
+		if (version == null || compiledState.version == null) {
+			// closed files are compiled again when they are changed on disk
+			return version == null && compiledState.version == null;
+		}
+		if (version.equals(compiledState.version)) {
+			return true;
+		}
+		// an undo may restore the compiled contents with a new version
+		String contents = fileContentsTracker.getContents(uri);
+		if (contents == null || !contents.equals(compiledState.contents)) {
+			return false;
+		}
+		compiledState.version = version;
+		return true;
+	}
+
+	private DocumentState captureState(URI uri) {
+		DocumentState state = new DocumentState();
+		state.version = fileContentsTracker.getVersion(uri);
+		if (state.version != null) {
+			state.contents = fileContentsTracker.getContents(uri);
+		}
+		return state;
+	}
+
+	private void updateCompiledState(URI uri) {
+		DocumentState state = capturedStates.get(uri);
+		if (state == null) {
+			if (fileContentsTracker.isOpen(uri)) {
+				// opened after the unit was created
+				compiledStates.remove(uri);
+				return;
+			}
+			state = new DocumentState();
+		}
+		compiledStates.put(uri, state);
+	}
+
+	private void compileAndVisitAST(Set<URI> uris, CancelChecker cancelChecker) {
+		// files that depend on a changed file may still reference its old
+		// classes, so they need to be compiled again too
+		Set<URI> urisToCompile = new LinkedHashSet<>(uris);
+		urisToCompile.addAll(dependencyGraph.getDependentURIs(uris));
+		Set<URI> compiledURIs = new HashSet<>();
+		try {
+			while (!urisToCompile.isEmpty()) {
+				// changes received while the previous compile was in progress
+				// may have been reset already, so mark them again
+				urisToCompile.forEach(fileContentsTracker::forceChanged);
+				if (!createOrUpdateCompilationUnit()) {
+					needsFullVisit = true;
+				}
+				compile(cancelChecker);
+				if (needsFullVisit) {
+					visitAST(cancelChecker);
+					break;
+				}
+				visitAST(urisToCompile, cancelChecker);
+				compiledURIs.addAll(urisToCompile);
+				// a changed file may define new classes that other files were
+				// already trying to reference
+				urisToCompile = dependencyGraph.getDependentURIs(uris);
+				urisToCompile.removeAll(compiledURIs);
+			}
+		} catch (CancellationException e) {
+			// the request that was waiting for this compile was cancelled, so
+			// the files that weren't finished will be compiled later instead
+			if (needsFullVisit && compilationUnit != null) {
+				compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+					compileScheduler.schedule(sourceUnit.getSource().getURI());
+				});
+			}
+			urisToCompile.forEach(compileScheduler::schedule);
+			throw e;
+		}
+	}
+
+	private void parseAndVisitAST(URI uri) {
+		if (astVisitor == null) {
+			return;
+		}
+		// the version is read first, so that it's never newer than the contents
+		Integer version = fileContentsTracker.getVersion(uri);
+		String contents = fileContentsTracker.getContents(uri);
+		if (version == null || contents == null) {
+			return;
+		}
+		GroovyLSCompilationUnit singleFileUnit = compilationUnitFactory.createForSingleFile(uri, contents);
+		try {
+			// a syntax tree is available after the conversion phase, but
+			// classes are not resolved until a full compile
+			singleFileUnit.compile(Phases.CONVERSION);
+		} catch (CompilationFailedException e) {
+			// ignore
+		} catch (GroovyBugError e) {
+			System.err.println("Unexpected exception in language server when parsing Groovy.");
+			e.printStackTrace(System.err);
+			return;
+		} catch (Exception e) {
+			System.err.println("Unexpected exception in language server when parsing Groovy.");
+			e.printStackTrace(System.err);
+			return;
+		}
+		// the resolved nodes are kept for other requests until the next
+		// compile replaces them
+		ASTNodeVisitor parsedVisitor = new ASTNodeVisitor(astVisitor);
+		parsedVisitor.visitCompilationUnitWithoutReferences(singleFileUnit, Collections.singleton(uri), null);
+		ParsedState parsedState = new ParsedState();
+		parsedState.version = version;
+		parsedState.visitor = parsedVisitor;
+		parsedStates.put(uri, parsedState);
+
+		// an empty list would clear errors from the last full compile before
+		// the next one has replaced them, so only new syntax errors are
+		// published immediately
+		List<Diagnostic> diagnostics = getDiagnosticsByFile(singleFileUnit.getErrorCollector()).get(uri);
+		if (diagnostics != null) {
+			if (prevDiagnosticsByFile == null) {
+				prevDiagnosticsByFile = new HashMap<>();
+			}
+			prevDiagnosticsByFile.put(uri, diagnostics);
+			languageClient.publishDiagnostics(new PublishDiagnosticsParams(uri.toString(), diagnostics));
 		}
-		previousContext = contextURI;
 	}
 
-	private void compile() {
+	private void compile(CancelChecker cancelChecker) {
 		if (compilationUnit == null) {
 			return;
 		}
+		compile(compilationUnit, cancelChecker);
+		Set<PublishDiagnosticsParams> diagnostics = handleErrorCollector(compilationUnit.getErrorCollector());
+		diagnostics.stream().forEach(languageClient::publishDiagnostics);
+	}
+
+	private void compile(GroovyLSCompilationUnit unit, CancelChecker cancelChecker) {
+		if (cancelChecker != null) {
+			unit.setProgressCallback((context, phase) -> {
+				// only check between phases. an exception thrown for a single
+				// source unit would be wrapped in a GroovyBugError.
+				if (context instanceof CompilationUnit) {
+					cancelChecker.checkCanceled();
+				}
+			});
+		}
 		try {
 			// AST is completely built after the canonicalization phase
 			// for code intelligence, we shouldn't need to go further
 			// http://groovy-lang.org/metaprogramming.html#_compilation_phases_guide
-			compilationUnit.compile(Phases.CANONICALIZATION);
+			unit.compile(Phases.CANONICALIZATION);
 		} catch (CompilationFailedException e) {
 			// ignore
+		} catch (CancellationException e) {
+			throw e;
 		} catch (GroovyBugError e) {
 			System.err.println("Unexpected exception in language server when compiling Groovy.");
 			e.printStackTrace(System.err);
 		} catch (Exception e) {
 			System.err.println("Unexpected exception in language server when compiling Groovy.");
 			e.printStackTrace(System.err);
+		} finally {
+			unit.setProgressCallback(null);
 		}
-		Set<PublishDiagnosticsParams> diagnostics = handleErrorCollector(compilationUnit.getErrorCollector());
-		diagnostics.stream().forEach(languageClient::publishDiagnostics);
+	}
+
+	private ASTNodeVisitor compileSpeculatively(URI uri, String contents, CancelChecker cancelChecker) {
+		GroovyLSCompilationUnit scratchUnit = compilationUnitFactory.createForSingleFile(uri, contents);
+		if (compilationUnit != null) {
+			// classes from the other files are already resolved, so the copy
+			// may reference them without compiling those files again
+			CompileUnit scratchAST = scratchUnit.getAST();
+			compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+				// a module may exist even if a syntax error in another file
+				// stopped it from being added to the unit's AST
+				ModuleNode moduleNode = sourceUnit.getAST();
+				if (moduleNode == null || uri.equals(sourceUnit.getSource().getURI())) {
+					return;
+				}
+				moduleNode.getClasses().forEach(classNode -> {
+					// a duplicate would report an error to the other file
+					if (scratchAST.getClass(classNode.getName()) == null) {
+						scratchAST.addClass(classNode);
+					}
+				});
+			});
+		}
+		compile(scratchUnit, cancelChecker);
+		ASTNodeVisitor scratchVisitor = new ASTNodeVisitor(astVisitor);
+		// the scratch visitor is only used by one request, which never needs
+		// references
+		scratchVisitor.visitCompilationUnitWithoutReferences(scratchUnit, Collections.singleton(uri), cancelChecker);
+		return scratchVisitor;
 	}
 
 	private Set<PublishDiagnosticsParams> handleErrorCollector(ErrorCollector collector) {
+		Map<URI, List<Diagnostic>> diagnosticsByFile = getDiagnosticsByFile(collector);
+
+		Set<PublishDiagnosticsParams> result = diagnosticsByFile.entrySet().stream()
+				.map(entry -> new PublishDiagnosticsParams(entry.getKey().toString(), entry.getValue()))
+				.collect(Collectors.toSet());
+
+		if (prevDiagnosticsByFile != null) {
+			for (URI key : prevDiagnosticsByFile.keySet()) {
+				if (!diagnosticsByFile.containsKey(key)) {
+					// send an empty list of diagnostics for files that had
+					// diagnostics previously or they won't be cleared
+					result.add(new PublishDiagnosticsParams(key.toString(), new ArrayList<>()));
+				}
+			}
+		}
+		prevDiagnosticsByFile = diagnosticsByFile;
+		return result;
+	}
+
+	private Map<URI, List<Diagnostic>> getDiagnosticsByFile(ErrorCollector collector) {
 		Map<URI, List<Diagnostic>> diagnosticsByFile = new HashMap<>();
 
 		List<? extends Message> errors = collector.getErrors();
@@ -541,21 +1096,6 @@ public class GroovyServices implements TextDocumentService, WorkspaceService, La
 						diagnosticsByFile.computeIfAbsent(uri, (key) -> new ArrayList<>()).add(diagnostic);
 					});
 		}
-
-		Set<PublishDiagnosticsParams> result = diagnosticsByFile.entrySet().stream()
-				.map(entry -> new PublishDiagnosticsParams(entry.getKey().toString(), entry.getValue()))
-				.collect(Collectors.toSet());
-
-		if (prevDiagnosticsByFile != null) {
-			for (URI key : prevDiagnosticsByFile.keySet()) {
-				if (!diagnosticsByFile.containsKey(key)) {
-					// send an empty list of diagnostics for files that had
-					// diagnostics previously or they won't be cleared
-					result.add(new PublishDiagnosticsParams(key.toString(), new ArrayList<>()));
-				}
-			}
-		}
-		prevDiagnosticsByFile = diagnosticsByFile;
-		return result;
+		return diagnosticsByFile;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,297 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the contents of each jar on the classpath in a separate file, so
+ * that a jar is only scanned again when its path, size, or modification
+ * time changes. The modules of a JDK are stored the same way, for each
+ * installation and version.
+ */
+public class ClasspathCache {
+	private static final int MAGIC = 0x47524c53;
+	private static final int FORMAT_VERSION = 2;
+	private static final byte FLAG_INTERFACE = 1;
+	private static final byte FLAG_ENUM = 2;
+	private static final int MAX_HEADER_STRING_LENGTH = 0xffff;
+
+	private static final String CACHE_DIRECTORY_PROPERTY = "groovyls.classpathCacheDirectory";
+
+	private Path cacheDirectory;
+
+	/**
+	 * Uses the directory in the groovyls.classpathCacheDirectory system
+	 * property, or ~/.groovyls/classpath if it isn't set.
+	 */
+	public ClasspathCache() {
+		this(getDefaultCacheDirectory());
+	}
+
+	public ClasspathCache(Path cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	private static Path getDefaultCacheDirectory() {
+		String cacheDirectory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+		if (cacheDirectory != null && !cacheDirectory.isEmpty()) {
+			return Paths.get(cacheDirectory);
+		}
+		return Paths.get(System.getProperty("user.home"), ".groovyls", "classpath");
+	}
+
+	/**
+	 * Returns null if the jar isn't cached, or if it has changed since it was
+	 * cached.
+	 */
+	public ClasspathContents read(File jarFile) {
+		return read(jarFile.getAbsolutePath(), jarFile);
+	}
+
+	public void write(File jarFile, ClasspathContents contents) {
+		write(jarFile.getAbsolutePath(), jarFile, contents);
+	}
+
+	/**
+	 * Returns null if the modules of the JDK at java.home aren't cached for
+	 * this version, or if its runtime image has changed since they were
+	 * cached.
+	 */
+	public ClasspathContents readJDK(String javaHome, String javaVersion) {
+		return read(getJDKKey(javaHome, javaVersion), getJDKModulesFile(javaHome));
+	}
+
+	public void writeJDK(String javaHome, String javaVersion, ClasspathContents contents) {
+		write(getJDKKey(javaHome, javaVersion), getJDKModulesFile(javaHome), contents);
+	}
+
+	private static String getJDKKey(String javaHome, String javaVersion) {
+		return "jdk:" + javaVersion + ":" + new File(javaHome).getAbsolutePath();
+	}
+
+	private static File getJDKModulesFile(String javaHome) {
+		// doesn't exist before Java 9, where the JDK is in jars instead
+		return Paths.get(javaHome, "lib", "modules").toFile();
+	}
+
+	/**
+	 * The key is stored along with the path, size, and modification time of
+	 * the file, and all of them must match when it's read.
+	 */
+	private ClasspathContents read(String key, File file) {
+		Path cacheFile = getCacheFile(key);
+		if (!Files.isRegularFile(cacheFile)) {
+			return null;
+		}
+		try {
+			// everything is decoded right away, so it's read all at once
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile));
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+				return null;
+			}
+			if (!readString(buffer).equals(key) || !readString(buffer).equals(file.getAbsolutePath())
+					|| buffer.getLong() != file.length() || buffer.getLong() != file.lastModified()) {
+				return null;
+			}
+			int packageCount = buffer.getInt();
+			List<String> packageNames = new ArrayList<>(packageCount);
+			for (int i = 0; i < packageCount; i++) {
+				packageNames.add(readString(buffer));
+			}
+			int classCount = buffer.getInt();
+			List<ClasspathClass> classes = new ArrayList<>(classCount);
+			for (int i = 0; i < classCount; i++) {
+				String name = readString(buffer);
+				String simpleName = readString(buffer);
+				// package names are stored once, and referenced by index
+				int packageIndex = buffer.getInt();
+				String packageName = packageIndex == -1 ? "" : packageNames.get(packageIndex);
+				byte flags = buffer.get();
+				classes.add(new ClasspathClass(name, simpleName, packageName, (flags & FLAG_INTERFACE) != 0,
+						(flags & FLAG_ENUM) != 0));
+			}
+			return new ClasspathContents(classes, packageNames);
+		} catch (IOException | RuntimeException e) {
+			// a corrupt cache file is scanned again
+			return null;
+		}
+	}
+
+	private void write(String key, File file, ClasspathContents contents) {
+		Map<String, Integer> packageIndexes = new LinkedHashMap<>();
+		for (String packageName : contents.getPackageNames()) {
+			packageIndexes.putIfAbsent(packageName, packageIndexes.size());
+		}
+		List<ClasspathClass> classes = contents.getClasses();
+		// a class may be in a package that ClassGraph didn't report
+		for (ClasspathClass classpathClass : classes) {
+			String packageName = classpathClass.getPackageName();
+			if (packageName != null && packageName.length() > 0) {
+				packageIndexes.putIfAbsent(packageName, packageIndexes.size());
+			}
+		}
+		Path cacheFile = getCacheFile(key);
+		Path tempFile = null;
+		try {
+			Files.createDirectories(cacheDirectory);
+			tempFile = Files.createTempFile(cacheDirectory, cacheFile.getFileName().toString(), ".tmp");
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(FORMAT_VERSION);
+				writeString(output, key);
+				// the file is stored too, so that it can be checked by prune()
+				writeString(output, file.getAbsolutePath());
+				output.writeLong(file.length());
+				output.writeLong(file.lastModified());
+				output.writeInt(packageIndexes.size());
+				for (String packageName : packageIndexes.keySet()) {
+					writeString(output, packageName);
+				}
+				output.writeInt(classes.size());
+				for (ClasspathClass classpathClass : classes) {
+					writeString(output, classpathClass.getName());
+					writeString(output, classpathClass.getSimpleName());
+					String packageName = classpathClass.getPackageName();
+					output.writeInt(packageName == null || packageName.length() == 0 ? -1
+							: packageIndexes.get(packageName));
+					byte flags = 0;
+					if (classpathClass.isInterface()) {
+						flags |= FLAG_INTERFACE;
+					}
+					if (classpathClass.isEnum()) {
+						flags |= FLAG_ENUM;
+					}
+					output.writeByte(flags);
+				}
+			}
+			// readers never see a partially written file
+			Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Failed to write classpath cache for: " + key);
+			if (tempFile != null) {
+				try {
+					Files.deleteIfExists(tempFile);
+				} catch (IOException e2) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the cache files of jars that were deleted or modified since
+	 * they were cached, and of JDKs that were removed or updated in place.
+	 * Files in an older format are deleted too.
+	 */
+	public void prune() {
+		if (!Files.isDirectory(cacheDirectory)) {
+			return;
+		}
+		try (DirectoryStream<Path> cacheFiles = Files.newDirectoryStream(cacheDirectory, "*.idx")) {
+			for (Path cacheFile : cacheFiles) {
+				if (isCurrent(cacheFile)) {
+					continue;
+				}
+				try {
+					Files.deleteIfExists(cacheFile);
+				} catch (IOException e) {
+					// another instance may be using it
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to prune classpath cache: " + cacheDirectory);
+		}
+	}
+
+	private boolean isCurrent(Path cacheFile) {
+		// only the header is read
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+			if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+				return false;
+			}
+			String key = readString(input);
+			File file = new File(readString(input));
+			// a missing file has a size and modification time of 0
+			return getCacheFile(key).getFileName().equals(cacheFile.getFileName())
+					&& input.readLong() == file.length() && input.readLong() == file.lastModified();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private Path getCacheFile(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder builder = new StringBuilder();
+			for (byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8))) {
+				builder.append(String.format("%02x", b));
+			}
+			return cacheDirectory.resolve(builder.toString() + ".idx");
+		} catch (NoSuchAlgorithmException e) {
+			return cacheDirectory.resolve(Integer.toHexString(key.hashCode()) + ".idx");
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		if (length < 0 || length > MAX_HEADER_STRING_LENGTH) {
+			throw new IOException("Invalid string length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
@@ -0,0 +1,59 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+/**
+ * The parts of a class on the classpath that are needed for completion.
+ */
+public class ClasspathClass {
+	private final String name;
+	private final String simpleName;
+	private final String packageName;
+	private final boolean isInterface;
+	private final boolean isEnum;
+
+	public ClasspathClass(String name, String simpleName, String packageName, boolean isInterface, boolean isEnum) {
+		this.name = name;
+		this.simpleName = simpleName;
+		this.packageName = packageName;
+		this.isInterface = isInterface;
+		this.isEnum = isEnum;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSimpleName() {
+		return simpleName;
+	}
+
+	public String getPackageName() {
+		return packageName;
+	}
+
+	public boolean isInterface() {
+		return isInterface;
+	}
+
+	public boolean isEnum() {
+		return isEnum;
+	}
+}
@@ -0,0 +1,62 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.classgraph.ClassInfo;
+import io.github.classgraph.PackageInfo;
+import io.github.classgraph.ScanResult;
+
+/**
+ * The classes and packages found in part of the classpath, like a single
+ * jar.
+ */
+public class ClasspathContents {
+	private final List<ClasspathClass> classes;
+	private final List<String> packageNames;
+
+	public ClasspathContents(List<ClasspathClass> classes, List<String> packageNames) {
+		this.classes = classes;
+		this.packageNames = packageNames;
+	}
+
+	public static ClasspathContents fromScanResult(ScanResult scanResult) {
+		List<ClasspathClass> classes = new ArrayList<>();
+		for (ClassInfo classInfo : scanResult.getAllClasses()) {
+			classes.add(new ClasspathClass(classInfo.getName(), classInfo.getSimpleName(), classInfo.getPackageName(),
+					classInfo.isInterface(), classInfo.isEnum()));
+		}
+		List<String> packageNames = new ArrayList<>();
+		for (PackageInfo packageInfo : scanResult.getPackageInfo()) {
+			packageNames.add(packageInfo.getName());
+		}
+		return new ClasspathContents(classes, packageNames);
+	}
+
+	public List<ClasspathClass> getClasses() {
+		return classes;
+	}
+
+	public List<String> getPackageNames() {
+		return packageNames;
+	}
+}
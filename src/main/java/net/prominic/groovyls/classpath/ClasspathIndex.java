@@ -0,0 +1,177 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The classes on the classpath, sorted so that all of the names that start
+ * with a prefix may be found with a binary search, and a tree of their
+ * packages. Built once for each classpath.
+ */
+public class ClasspathIndex {
+	private ClasspathClass[] classesBySimpleName;
+	private ClasspathClass[] classesByInitials;
+	private String[] initials;
+	private PackageTree packageTree;
+
+	/**
+	 * Combines the contents of each part of the classpath. If a class appears
+	 * in more than one part, the first one wins, like a class loader.
+	 */
+	public ClasspathIndex(List<ClasspathContents> parts) {
+		this(mergeClasses(parts), mergePackageNames(parts));
+	}
+
+	public ClasspathIndex(ClasspathClass[] classes, String[] packageNames) {
+		classesBySimpleName = classes.clone();
+		Arrays.sort(classesBySimpleName,
+				Comparator.comparing(ClasspathClass::getSimpleName).thenComparing(ClasspathClass::getName));
+		classesByInitials = classes.clone();
+		Arrays.sort(classesByInitials, Comparator.comparing((ClasspathClass classpathClass) -> {
+			return getInitials(classpathClass.getSimpleName());
+		}).thenComparing(ClasspathClass::getName));
+		initials = new String[classesByInitials.length];
+		for (int i = 0; i < classesByInitials.length; i++) {
+			initials[i] = getInitials(classesByInitials[i].getSimpleName());
+		}
+		packageTree = new PackageTree(classes, packageNames);
+	}
+
+	/**
+	 * Passes each class with a simple name that starts with the prefix to the
+	 * consumer, in order, until the consumer returns false.
+	 */
+	public void forEachClassBySimpleName(String prefix, Predicate<ClasspathClass> consumer) {
+		forEachWithPrefix(classesBySimpleName, ClasspathClass::getSimpleName, prefix, consumer);
+	}
+
+	/**
+	 * Passes each class with capital letters that start with the prefix to
+	 * the consumer, like HashMap for HM, until the consumer returns false.
+	 */
+	public void forEachClassByInitials(String prefix, Predicate<ClasspathClass> consumer) {
+		int start = lowerBound(initials, Function.identity(), prefix);
+		for (int i = start; i < initials.length && initials[i].startsWith(prefix); i++) {
+			if (!consumer.test(classesByInitials[i])) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Passes the full name of each direct subpackage of a package with a last
+	 * segment that starts with the prefix to the consumer, in order, until the
+	 * consumer returns false. The top-level packages are the subpackages of
+	 * "".
+	 */
+	public void forEachSubpackage(String packageName, String prefix, Predicate<String> consumer) {
+		packageTree.forEachSubpackage(packageName, prefix, consumer);
+	}
+
+	/**
+	 * Passes each class in a package, but not in its subpackages, with a
+	 * simple name that starts with the prefix to the consumer, in order,
+	 * until the consumer returns false.
+	 */
+	public void forEachClassInPackage(String packageName, String prefix, Predicate<ClasspathClass> consumer) {
+		packageTree.forEachClassInPackage(packageName, prefix, consumer);
+	}
+
+	/**
+	 * Returns true if the prefix should be compared to the capital letters of
+	 * class names instead.
+	 */
+	public static boolean isInitials(String prefix) {
+		if (prefix.length() < 2) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (!Character.isUpperCase(prefix.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String getInitials(String simpleName) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < simpleName.length(); i++) {
+			char c = simpleName.charAt(i);
+			if (Character.isUpperCase(c)) {
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	static <T> void forEachWithPrefix(T[] sorted, Function<T, String> getKey, String prefix,
+			Predicate<T> consumer) {
+		int start = lowerBound(sorted, getKey, prefix);
+		for (int i = start; i < sorted.length && getKey.apply(sorted[i]).startsWith(prefix); i++) {
+			if (!consumer.test(sorted[i])) {
+				return;
+			}
+		}
+	}
+
+	private static <T> int lowerBound(T[] sorted, Function<T, String> getKey, String prefix) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getKey.apply(sorted[mid]).compareTo(prefix) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static ClasspathClass[] mergeClasses(List<ClasspathContents> parts) {
+		Set<String> classNames = new HashSet<>();
+		List<ClasspathClass> result = new ArrayList<>();
+		for (ClasspathContents part : parts) {
+			for (ClasspathClass classpathClass : part.getClasses()) {
+				if (classNames.add(classpathClass.getName())) {
+					result.add(classpathClass);
+				}
+			}
+		}
+		return result.toArray(new ClasspathClass[result.size()]);
+	}
+
+	private static String[] mergePackageNames(List<ClasspathContents> parts) {
+		Set<String> result = new LinkedHashSet<>();
+		for (ClasspathContents part : parts) {
+			result.addAll(part.getPackageNames());
+		}
+		return result.toArray(new String[result.size()]);
+	}
+}
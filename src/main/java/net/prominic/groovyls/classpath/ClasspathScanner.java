@@ -0,0 +1,139 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.ScanResult;
+
+/**
+ * Finds the classes on a class loader's classpath. Jars are read from the
+ * cache when they haven't changed, and only the jars that are new or
+ * modified are scanned. The JDK modules are scanned once for each JDK.
+ */
+public class ClasspathScanner {
+	public interface ProgressListener {
+		void progress(int completed, int total);
+	}
+
+	// the JDK can't change while the server is running, so every scanner
+	// shares it
+	private static ClasspathContents jdkContents;
+
+	private ClasspathCache cache;
+	private boolean pruned = false;
+
+	public ClasspathScanner(ClasspathCache cache) {
+		this.cache = cache;
+	}
+
+	public ClasspathIndex scan(ClassLoader classLoader) {
+		return scan(classLoader, null);
+	}
+
+	/**
+	 * May throw ClassGraphException if the classpath can't be scanned, or
+	 * CancellationException if the thread is interrupted. The listener is
+	 * notified after each part of the classpath is finished.
+	 */
+	public ClasspathIndex scan(ClassLoader classLoader, ProgressListener listener) {
+		if (!pruned) {
+			// files for jars that are gone would never be read or replaced
+			cache.prune();
+			pruned = true;
+		}
+		List<File> classpathFiles = new ClassGraph().overrideClassLoaders(classLoader).enableSystemJarsAndModules()
+				.getClasspathFiles();
+		// the JDK, the jars, and then everything else
+		int total = classpathFiles.size() + 2;
+		List<ClasspathContents> parts = new ArrayList<>();
+		if (listener != null) {
+			listener.progress(0, total);
+		}
+		// like a class loader, the JDK's classes win over the classpath
+		parts.add(getJDKContents());
+		for (int i = 0; i < classpathFiles.size(); i++) {
+			if (Thread.interrupted()) {
+				throw new CancellationException();
+			}
+			if (listener != null) {
+				listener.progress(i + 1, total);
+			}
+			File file = classpathFiles.get(i);
+			if (!file.isFile()) {
+				// directories are usually build output that changes often,
+				// so they're scanned below instead
+				continue;
+			}
+			ClasspathContents contents = cache.read(file);
+			if (contents == null) {
+				contents = scanJar(file);
+				cache.write(file, contents);
+			}
+			parts.add(contents);
+		}
+		if (listener != null) {
+			listener.progress(total - 1, total);
+		}
+		// everything that isn't a jar or a JDK module, like directories
+		try (ScanResult scanResult = new ClassGraph().overrideClassLoaders(classLoader).enableClassInfo()
+				.disableJarScanning().disableModuleScanning().scan()) {
+			parts.add(ClasspathContents.fromScanResult(scanResult));
+		}
+		return new ClasspathIndex(parts);
+	}
+
+	private ClasspathContents getJDKContents() {
+		synchronized (ClasspathScanner.class) {
+			if (jdkContents != null) {
+				return jdkContents;
+			}
+			String javaHome = System.getProperty("java.home");
+			String javaVersion = System.getProperty("java.version");
+			ClasspathContents contents = cache.readJDK(javaHome, javaVersion);
+			if (contents == null) {
+				contents = scanJDK();
+				cache.writeJDK(javaHome, javaVersion, contents);
+			}
+			jdkContents = contents;
+			return contents;
+		}
+	}
+
+	private ClasspathContents scanJDK() {
+		// before Java 9, the JDK is in jars that are cached like the others
+		try (ScanResult scanResult = new ClassGraph().enableClassInfo().enableSystemJarsAndModules()
+				.disableJarScanning().disableDirScanning().scan()) {
+			return ClasspathContents.fromScanResult(scanResult);
+		}
+	}
+
+	private ClasspathContents scanJar(File jarFile) {
+		try (ScanResult scanResult = new ClassGraph().overrideClasspath(Collections.singletonList(jarFile))
+				.enableClassInfo().scan()) {
+			return ClasspathContents.fromScanResult(scanResult);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * The packages on the classpath, split into segments, so that the direct
+ * subpackages and classes of a package may be found without visiting every
+ * other package.
+ */
+class PackageTree {
+	private static final ClasspathClass[] NO_CLASSES = new ClasspathClass[0];
+
+	private static class Node {
+		public final String name;
+		// sorted, so that the segments with a prefix are next to each other
+		public final TreeMap<String, Node> children = new TreeMap<>();
+		public ClasspathClass[] classes = NO_CLASSES;
+
+		public Node(String name) {
+			this.name = name;
+		}
+	}
+
+	private final Node root = new Node("");
+
+	public PackageTree(ClasspathClass[] classes, String[] packageNames) {
+		for (String packageName : packageNames) {
+			getOrCreateNode(packageName);
+		}
+		Map<String, List<ClasspathClass>> classesByPackage = new HashMap<>();
+		for (ClasspathClass classpathClass : classes) {
+			String packageName = classpathClass.getPackageName();
+			if (packageName == null) {
+				packageName = "";
+			}
+			classesByPackage.computeIfAbsent(packageName, key -> new ArrayList<>()).add(classpathClass);
+		}
+		Comparator<ClasspathClass> comparator = Comparator.comparing(ClasspathClass::getSimpleName)
+				.thenComparing(ClasspathClass::getName);
+		classesByPackage.forEach((packageName, packageClasses) -> {
+			packageClasses.sort(comparator);
+			Node node = getOrCreateNode(packageName);
+			node.classes = packageClasses.toArray(new ClasspathClass[packageClasses.size()]);
+		});
+	}
+
+	/**
+	 * Passes the full name of each direct subpackage with a last segment that
+	 * starts with the prefix to the consumer, in order, until the consumer
+	 * returns false. The top-level packages are the subpackages of "".
+	 */
+	public void forEachSubpackage(String packageName, String prefix, Predicate<String> consumer) {
+		Node node = getNode(packageName);
+		if (node == null) {
+			return;
+		}
+		for (Map.Entry<String, Node> entry : node.children.tailMap(prefix, true).entrySet()) {
+			if (!entry.getKey().startsWith(prefix) || !consumer.test(entry.getValue().name)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Passes each class in the package, but not its subpackages, with a
+	 * simple name that starts with the prefix to the consumer, in order,
+	 * until the consumer returns false.
+	 */
+	public void forEachClassInPackage(String packageName, String prefix, Predicate<ClasspathClass> consumer) {
+		Node node = getNode(packageName);
+		if (node == null) {
+			return;
+		}
+		ClasspathIndex.forEachWithPrefix(node.classes, ClasspathClass::getSimpleName, prefix, consumer);
+	}
+
+	private Node getNode(String packageName) {
+		if (packageName.length() == 0) {
+			return root;
+		}
+		Node node = root;
+		int start = 0;
+		while (node != null) {
+			int end = packageName.indexOf('.', start);
+			if (end == -1) {
+				return node.children.get(packageName.substring(start));
+			}
+			node = node.children.get(packageName.substring(start, end));
+			start = end + 1;
+		}
+		return null;
+	}
+
+	private Node getOrCreateNode(String packageName) {
+		if (packageName.length() == 0) {
+			return root;
+		}
+		Node node = root;
+		int start = 0;
+		while (true) {
+			int end = packageName.indexOf('.', start);
+			String segment = end != -1 ? packageName.substring(start, end) : packageName.substring(start);
+			String name = end != -1 ? packageName.substring(0, end) : packageName;
+			node = node.children.computeIfAbsent(segment, key -> new Node(name));
+			if (end == -1) {
+				return node;
+			}
+			start = end + 1;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * Finds the innermost node at a position in a single file. The nodes are
+ * sorted by the start of their ranges, and a tree of the maximum end of each
+ * subrange skips the nodes that end before the position.
+ */
+public class ASTNodeRangeIndex {
+	private ASTNode[] nodes;
+	private long[] starts;
+	private long[] ends;
+	private long[] maxEnds;
+
+	public ASTNodeRangeIndex(List<ASTNode> nodesInFile) {
+		ASTNode[] sortedNodes = nodesInFile.stream().filter(node -> {
+			// can't be the offset node if it has no position
+			return node.getLineNumber() != -1;
+		}).toArray(ASTNode[]::new);
+		int count = sortedNodes.length;
+		long[] unsortedStarts = new long[count];
+		long[] unsortedEnds = new long[count];
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			ASTNode node = sortedNodes[i];
+			unsortedStarts[i] = toPosition(node.getLineNumber(), node.getColumnNumber());
+			unsortedEnds[i] = node.getLastLineNumber() == -1 ? unsortedStarts[i]
+					: toPosition(node.getLastLineNumber(), node.getLastColumnNumber());
+			order[i] = i;
+		}
+		// nodes with the same start are sorted from the outermost to the
+		// innermost, and nodes with the same range keep the visit order
+		Arrays.sort(order, (i1, i2) -> {
+			int result = Long.compare(unsortedStarts[i1], unsortedStarts[i2]);
+			if (result != 0) {
+				return result;
+			}
+			result = Long.compare(unsortedEnds[i2], unsortedEnds[i1]);
+			if (result != 0) {
+				return result;
+			}
+			return Integer.compare(i1, i2);
+		});
+		nodes = new ASTNode[count];
+		starts = new long[count];
+		ends = new long[count];
+		for (int i = 0; i < count; i++) {
+			nodes[i] = sortedNodes[order[i]];
+			starts[i] = unsortedStarts[order[i]];
+			ends[i] = unsortedEnds[order[i]];
+		}
+		maxEnds = new long[Math.max(1, 4 * count)];
+		if (count > 0) {
+			buildMaxEnds(0, 0, count - 1);
+		}
+	}
+
+	/**
+	 * Returns the node with the latest start that contains the position. If
+	 * more than one node has the same range, the tie breaker chooses the one
+	 * that sorts first.
+	 */
+	public ASTNode getNodeAtLineAndColumn(int line, int column, Comparator<ASTNode> tieBreaker) {
+		if (nodes.length == 0) {
+			return null;
+		}
+		long position = toLSPPosition(line, column);
+		int lastStart = findLastStartAtOrBefore(position);
+		if (lastStart == -1) {
+			return null;
+		}
+		int index = findLastEndAtOrAfter(0, 0, nodes.length - 1, lastStart, position);
+		if (index == -1) {
+			return null;
+		}
+		ASTNode result = nodes[index];
+		for (int i = index - 1; i >= 0 && starts[i] == starts[index] && ends[i] == ends[index]; i--) {
+			if (tieBreaker.compare(nodes[i], result) <= 0) {
+				result = nodes[i];
+			}
+		}
+		return result;
+	}
+
+	private int findLastStartAtOrBefore(long position) {
+		int low = 0;
+		int high = starts.length - 1;
+		int result = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] <= position) {
+				result = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return result;
+	}
+
+	private int findLastEndAtOrAfter(int treeIndex, int low, int high, int limit, long position) {
+		if (low > limit || maxEnds[treeIndex] < position) {
+			return -1;
+		}
+		if (low == high) {
+			return low;
+		}
+		int mid = (low + high) >>> 1;
+		int result = findLastEndAtOrAfter(2 * treeIndex + 2, mid + 1, high, limit, position);
+		if (result != -1) {
+			return result;
+		}
+		return findLastEndAtOrAfter(2 * treeIndex + 1, low, mid, limit, position);
+	}
+
+	private long buildMaxEnds(int treeIndex, int low, int high) {
+		if (low == high) {
+			maxEnds[treeIndex] = ends[low];
+		} else {
+			int mid = (low + high) >>> 1;
+			maxEnds[treeIndex] = Math.max(buildMaxEnds(2 * treeIndex + 1, low, mid),
+					buildMaxEnds(2 * treeIndex + 2, mid + 1, high));
+		}
+		return maxEnds[treeIndex];
+	}
+
+	private static long toPosition(int groovyLine, int groovyColumn) {
+		// same conversion as GroovyLanguageServerUtils.createGroovyPosition()
+		int lspLine = groovyLine > 0 ? groovyLine - 1 : groovyLine;
+		int lspColumn = groovyColumn > 0 ? groovyColumn - 1 : 0;
+		return toLSPPosition(lspLine, lspColumn);
+	}
+
+	private static long toLSPPosition(int line, int column) {
+		return ((long) line << 32) | (column & 0xffffffffL);
+	}
+}
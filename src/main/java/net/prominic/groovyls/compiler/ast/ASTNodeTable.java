@@ -0,0 +1,266 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.groovy.ast.ASTNode;
+
+/**
+ * Gives every visited node an int id. Parents and files are stored in arrays
+ * indexed by id, so walking up the tree doesn't require any hashing. The nodes
+ * of a file always have consecutive ids, so a file may be removed and visited
+ * again without touching the others.
+ */
+public class ASTNodeTable {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private ASTNode[] nodes = new ASTNode[INITIAL_CAPACITY];
+	private int[] parentIds = new int[INITIAL_CAPACITY];
+	// -1 if the node was only added so that its children have a parent
+	private int[] uriIds = new int[INITIAL_CAPACITY];
+	private int size = 0;
+	private int removedCount = 0;
+	// the ids of the nodes added to this table
+	private IdentityHashMap<ASTNode, Integer> idsByNode = new IdentityHashMap<>();
+	// the ids of the nodes added to older tables, newest last. they're never
+	// modified, and they may still contain nodes that were removed, so every
+	// id is checked against the range of its file.
+	private List<IdentityHashMap<ASTNode, Integer>> sharedIdsByNode = new ArrayList<>();
+	private List<URI> uris = new ArrayList<>();
+	private Map<URI, Integer> uriIdsByURI = new HashMap<>();
+	// copied before a new file is added, if they're shared with another table
+	private boolean urisShared = false;
+	// the ranges are replaced instead of modified, so they may be shared
+	private Map<URI, int[]> idRangesByURI = new LinkedHashMap<>();
+
+	/**
+	 * Returns a table that shares the arrays and maps of this one. New nodes
+	 * are only ever added after the end of this table, and removed nodes are
+	 * left in place until the arrays are replaced by compacting, so this table
+	 * must not be modified afterwards.
+	 */
+	public ASTNodeTable copy() {
+		ASTNodeTable result = new ASTNodeTable();
+		result.nodes = nodes;
+		result.parentIds = parentIds;
+		result.uriIds = uriIds;
+		result.size = size;
+		result.removedCount = removedCount;
+		result.uris = uris;
+		result.uriIdsByURI = uriIdsByURI;
+		result.urisShared = true;
+		result.idRangesByURI = new LinkedHashMap<>(idRangesByURI);
+		result.sharedIdsByNode = new ArrayList<>(sharedIdsByNode);
+		if (!idsByNode.isEmpty()) {
+			result.sharedIdsByNode.add(idsByNode);
+			result.mergeSharedIdsByNode();
+		}
+		return result;
+	}
+
+	public void clear() {
+		// everything may be shared with a copy
+		nodes = new ASTNode[INITIAL_CAPACITY];
+		parentIds = new int[INITIAL_CAPACITY];
+		uriIds = new int[INITIAL_CAPACITY];
+		size = 0;
+		removedCount = 0;
+		idsByNode = new IdentityHashMap<>();
+		sharedIdsByNode = new ArrayList<>();
+		uris = new ArrayList<>();
+		uriIdsByURI = new HashMap<>();
+		urisShared = false;
+		idRangesByURI = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Must be called before the nodes of a file are added.
+	 */
+	public void startURI(URI uri) {
+		remove(uri);
+		// the range is open until endURI(), so that nodes visited more than
+		// once are found
+		idRangesByURI.put(uri, new int[] { size, Integer.MAX_VALUE });
+	}
+
+	/**
+	 * Must be called after the nodes of a file are added.
+	 */
+	public void endURI(URI uri) {
+		int[] idRange = idRangesByURI.get(uri);
+		if (idRange != null) {
+			idRangesByURI.put(uri, new int[] { idRange[0], size });
+		}
+	}
+
+	public void remove(URI uri) {
+		int[] idRange = idRangesByURI.remove(uri);
+		if (idRange == null) {
+			return;
+		}
+		// the ids of the removed nodes are left in the maps, but they're
+		// outside of any range now
+		removedCount += Math.min(idRange[1], size) - idRange[0];
+		if (removedCount > size / 2) {
+			compact();
+		}
+	}
+
+	/**
+	 * Adds a node, and returns its id. If the node isn't recorded, it can't
+	 * be found by getId(), but it may be the parent of other nodes.
+	 */
+	public int add(ASTNode node, int parentId, URI uri, boolean recorded) {
+		if (size == nodes.length) {
+			int capacity = nodes.length * 2;
+			nodes = Arrays.copyOf(nodes, capacity);
+			parentIds = Arrays.copyOf(parentIds, capacity);
+			uriIds = Arrays.copyOf(uriIds, capacity);
+		}
+		int id = size;
+		size++;
+		nodes[id] = node;
+		parentIds[id] = parentId;
+		if (recorded) {
+			Integer uriId = uriIdsByURI.get(uri);
+			if (uriId == null) {
+				if (urisShared) {
+					uris = new ArrayList<>(uris);
+					uriIdsByURI = new HashMap<>(uriIdsByURI);
+					urisShared = false;
+				}
+				uriId = uris.size();
+				uris.add(uri);
+				uriIdsByURI.put(uri, uriId);
+			}
+			uriIds[id] = uriId;
+			idsByNode.put(node, id);
+		} else {
+			uriIds[id] = -1;
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of a recorded node, or -1.
+	 */
+	public int getId(ASTNode node) {
+		Integer id = idsByNode.get(node);
+		for (int i = sharedIdsByNode.size() - 1; id == null && i >= 0; i--) {
+			id = sharedIdsByNode.get(i).get(node);
+		}
+		return id != null && isCurrent(id) ? id : -1;
+	}
+
+	public ASTNode getNode(int id) {
+		return nodes[id];
+	}
+
+	public int getParentId(int id) {
+		return parentIds[id];
+	}
+
+	public boolean isRecorded(int id) {
+		return uriIds[id] != -1;
+	}
+
+	public URI getURI(int id) {
+		int uriId = uriIds[id];
+		return uriId != -1 ? uris.get(uriId) : null;
+	}
+
+	/**
+	 * Returns false if the file of the node was removed or visited again.
+	 */
+	private boolean isCurrent(int id) {
+		if (id >= size || uriIds[id] == -1) {
+			return false;
+		}
+		int[] idRange = idRangesByURI.get(uris.get(uriIds[id]));
+		return idRange != null && id >= idRange[0] && id < idRange[1];
+	}
+
+	private void mergeSharedIdsByNode() {
+		// like the digits of a binary counter, each map is at least twice
+		// the size of the next one, so there are only a logarithmic number
+		// of them, and each node is copied a logarithmic number of times
+		while (sharedIdsByNode.size() >= 2) {
+			int last = sharedIdsByNode.size() - 1;
+			IdentityHashMap<ASTNode, Integer> newer = sharedIdsByNode.get(last);
+			IdentityHashMap<ASTNode, Integer> older = sharedIdsByNode.get(last - 1);
+			if (newer.size() * 2 < older.size()) {
+				break;
+			}
+			IdentityHashMap<ASTNode, Integer> merged = new IdentityHashMap<>();
+			putCurrentIds(older, merged);
+			putCurrentIds(newer, merged);
+			sharedIdsByNode.remove(last);
+			sharedIdsByNode.set(last - 1, merged);
+		}
+	}
+
+	private void putCurrentIds(Map<ASTNode, Integer> source, Map<ASTNode, Integer> target) {
+		source.forEach((node, id) -> {
+			if (isCurrent(id)) {
+				target.put(node, id);
+			}
+		});
+	}
+
+	private void compact() {
+		ASTNode[] newNodes = new ASTNode[Math.max(INITIAL_CAPACITY, (size - removedCount) * 2)];
+		int[] newParentIds = new int[newNodes.length];
+		int[] newURIIds = new int[newNodes.length];
+		IdentityHashMap<ASTNode, Integer> newIdsByNode = new IdentityHashMap<>();
+		int newSize = 0;
+		for (Map.Entry<URI, int[]> entry : idRangesByURI.entrySet()) {
+			int[] idRange = entry.getValue();
+			// parents are always in the same file, so every id in the range
+			// moves by the same offset
+			int offset = newSize - idRange[0];
+			for (int id = idRange[0]; id < idRange[1]; id++) {
+				int newId = id + offset;
+				newNodes[newId] = nodes[id];
+				newParentIds[newId] = parentIds[id] != -1 ? parentIds[id] + offset : -1;
+				newURIIds[newId] = uriIds[id];
+				if (uriIds[id] != -1) {
+					newIdsByNode.put(nodes[id], newId);
+				}
+			}
+			newSize += idRange[1] - idRange[0];
+			entry.setValue(new int[] { idRange[0] + offset, idRange[1] + offset });
+		}
+		nodes = newNodes;
+		parentIds = newParentIds;
+		uriIds = newURIIds;
+		size = newSize;
+		removedCount = 0;
+		idsByNode = newIdsByNode;
+		sharedIdsByNode = new ArrayList<>();
+	}
+}
@@ -21,13 +21,14 @@ package net.prominic.groovyls.compiler.ast;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotatedNode;
@@ -92,40 +93,12 @@ import org.codehaus.groovy.ast.stmt.WhileStatement;
 import org.codehaus.groovy.classgen.BytecodeExpression;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.SourceUnit;
-import org.eclipse.lsp4j.Position;
-import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
-import net.prominic.groovyls.util.GroovyLanguageServerUtils;
-import net.prominic.lsp.utils.Positions;
-import net.prominic.lsp.utils.Ranges;
+import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 
-public class ASTNodeVisitor extends ClassCodeVisitorSupport {
-	private class ASTLookupKey {
-		public ASTLookupKey(ASTNode node) {
-			this.node = node;
-		}
-
-		private ASTNode node;
-
-		@Override
-		public boolean equals(Object o) {
-			// some ASTNode subclasses, like ClassNode, override equals() with
-			// comparisons that are not strict. we need strict.
-			ASTLookupKey other = (ASTLookupKey) o;
-			return node == other.node;
-		}
-
-		@Override
-		public int hashCode() {
-			return node.hashCode();
-		}
-	}
-
-	private class ASTNodeLookupData {
-		public ASTNode parent;
-		public URI uri;
-	}
 
+public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	private SourceUnit sourceUnit;
 
 	@Override
@@ -133,10 +106,64 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		return sourceUnit;
 	}
 
-	private Stack<ASTNode> stack = new Stack<>();
+	private int[] stack = new int[64];
+	private int stackSize = 0;
 	private Map<URI, List<ASTNode>> nodesByURI = new HashMap<>();
 	private Map<URI, List<ClassNode>> classNodesByURI = new HashMap<>();
-	private Map<ASTLookupKey, ASTNodeLookupData> lookup = new HashMap<>();
+	private Map<String, List<ClassNode>> classNodesByName = new HashMap<>();
+	private List<ClassNode> allClassNodes;
+	private ASTNodeTable nodeTable = new ASTNodeTable();
+	// keyed by getReferenceKey()
+	private Map<URI, Map<Object, List<ASTNode>>> referencesByURI = new HashMap<>();
+	private Map<URI, ASTNodeRangeIndex> rangeIndexByURI = new HashMap<>();
+	private Map<URI, ASTSymbolIndex> symbolIndexByURI = new HashMap<>();
+	// filled in lazily by requests, which may run at the same time
+	private Map<String, ClassMemberTable> memberTablesByName = new ConcurrentHashMap<>();
+	private Comparator<ASTNode> sameRangeComparator = (n1, n2) -> {
+		if (contains(n1, n2)) {
+			if (n1 instanceof ClassNode && n2 instanceof ConstructorNode) {
+				return -1;
+			}
+			return 1;
+		} else if (contains(n2, n1)) {
+			if (n2 instanceof ClassNode && n1 instanceof ConstructorNode) {
+				return 1;
+			}
+			return -1;
+		}
+		return 0;
+	};
+	private CancelChecker cancelChecker;
+	private ASTNodeVisitor baseVisitor;
+
+	public ASTNodeVisitor() {
+	}
+
+	/**
+	 * Creates a visitor that falls back to an existing visitor for any file
+	 * that it hasn't visited itself. The existing visitor is not modified.
+	 */
+	public ASTNodeVisitor(ASTNodeVisitor baseVisitor) {
+		this.baseVisitor = baseVisitor;
+	}
+
+	/**
+	 * Returns a new version of this visitor that may visit files again
+	 * without changing this one. The data of each file that isn't visited
+	 * again is shared, so this visitor must not be modified afterwards.
+	 */
+	public ASTNodeVisitor copy() {
+		ASTNodeVisitor result = new ASTNodeVisitor(baseVisitor);
+		result.nodesByURI = new HashMap<>(nodesByURI);
+		result.classNodesByURI = new HashMap<>(classNodesByURI);
+		result.classNodesByName = new HashMap<>(classNodesByName);
+		result.allClassNodes = allClassNodes;
+		result.nodeTable = nodeTable.copy();
+		result.referencesByURI = new HashMap<>(referencesByURI);
+		result.rangeIndexByURI = new HashMap<>(rangeIndexByURI);
+		result.symbolIndexByURI = new HashMap<>(symbolIndexByURI);
+		return result;
+	}
 
 	private void pushASTNode(ASTNode node) {
 		boolean isSynthetic = false;
@@ -144,31 +171,85 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 			AnnotatedNode annotatedNode = (AnnotatedNode) node;
 			isSynthetic = annotatedNode.isSynthetic();
 		}
-		if (!isSynthetic) {
+		// some nodes are visited more than once, like an elvis operator. the
+		// first parent is kept, or a node could become its own ancestor.
+		int id = isSynthetic ? -1 : nodeTable.getId(node);
+		if (id == -1) {
 			URI uri = sourceUnit.getSource().getURI();
-			nodesByURI.get(uri).add(node);
-
-			ASTNodeLookupData data = new ASTNodeLookupData();
-			data.uri = uri;
-			if (stack.size() > 0) {
-				data.parent = stack.lastElement();
+			int parentId = stackSize > 0 ? stack[stackSize - 1] : -1;
+			id = nodeTable.add(node, parentId, uri, !isSynthetic);
+			if (!isSynthetic) {
+				nodesByURI.get(uri).add(node);
 			}
-			lookup.put(new ASTLookupKey(node), data);
 		}
 
-		stack.add(node);
+		if (stackSize == stack.length) {
+			stack = Arrays.copyOf(stack, stackSize * 2);
+		}
+		stack[stackSize] = id;
+		stackSize++;
 	}
 
 	private void popASTNode() {
-		stack.pop();
+		stackSize--;
+	}
+
+	private void checkCanceled() {
+		if (cancelChecker != null) {
+			cancelChecker.checkCanceled();
+		}
 	}
 
 	public List<ClassNode> getClassNodes() {
+		if (allClassNodes != null) {
+			return allClassNodes;
+		}
 		List<ClassNode> result = new ArrayList<>();
 		for (List<ClassNode> nodes : classNodesByURI.values()) {
 			result.addAll(nodes);
 		}
-		return result;
+		if (baseVisitor != null) {
+			baseVisitor.classNodesByURI.forEach((uri, nodes) -> {
+				if (!classNodesByURI.containsKey(uri)) {
+					result.addAll(nodes);
+				}
+			});
+		}
+		allClassNodes = Collections.unmodifiableList(result);
+		return allClassNodes;
+	}
+
+	/**
+	 * Returns the visited class with the specified fully-qualified name, or
+	 * null if no file defines it.
+	 */
+	public ClassNode getClassNode(String name) {
+		List<ClassNode> classNodes = classNodesByName.get(name);
+		if (classNodes != null && !classNodes.isEmpty()) {
+			return classNodes.get(0);
+		}
+		if (baseVisitor != null) {
+			List<ClassNode> baseClassNodes = baseVisitor.classNodesByName.get(name);
+			if (baseClassNodes != null) {
+				for (ClassNode classNode : baseClassNodes) {
+					if (!classNodesByURI.containsKey(baseVisitor.getURI(classNode))) {
+						return classNode;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	public List<ClassNode> getClassNodes(URI uri) {
+		List<ClassNode> classNodes = classNodesByURI.get(uri);
+		if (classNodes == null) {
+			if (baseVisitor != null) {
+				return baseVisitor.getClassNodes(uri);
+			}
+			return Collections.emptyList();
+		}
+		return classNodes;
 	}
 
 	public List<ASTNode> getNodes() {
@@ -176,142 +257,350 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 		for (List<ASTNode> nodes : nodesByURI.values()) {
 			result.addAll(nodes);
 		}
+		if (baseVisitor != null) {
+			baseVisitor.nodesByURI.forEach((uri, nodes) -> {
+				if (!nodesByURI.containsKey(uri)) {
+					result.addAll(nodes);
+				}
+			});
+		}
 		return result;
 	}
 
 	public List<ASTNode> getNodes(URI uri) {
 		List<ASTNode> nodes = nodesByURI.get(uri);
 		if (nodes == null) {
+			if (baseVisitor != null) {
+				return baseVisitor.getNodes(uri);
+			}
 			return Collections.emptyList();
 		}
 		return nodes;
 	}
 
-	public ASTNode getNodeAtLineAndColumn(URI uri, int line, int column) {
-		Position position = new Position(line, column);
-		Map<ASTNode, Range> nodeToRange = new HashMap<>();
-		List<ASTNode> nodes = nodesByURI.get(uri);
-		if (nodes == null) {
-			return null;
-		}
-		List<ASTNode> foundNodes = nodes.stream().filter(node -> {
-			if (node.getLineNumber() == -1) {
-				// can't be the offset node if it has no position
-				// also, do this first because it's the fastest comparison
-				return false;
-			}
-			Range range = GroovyLanguageServerUtils.astNodeToRange(node);
-			if (range == null) {
-				return false;
-			}
-			boolean result = Ranges.contains(range, position);
-			if (result) {
-				// save the range object to avoid creating it again when we
-				// sort the nodes
-				nodeToRange.put(node, range);
-			}
-			return result;
-		}).sorted((n1, n2) -> {
-			int result = Positions.COMPARATOR.reversed().compare(nodeToRange.get(n1).getStart(),
-					nodeToRange.get(n2).getStart());
-			if (result != 0) {
-				return result;
-			}
-			result = Positions.COMPARATOR.compare(nodeToRange.get(n1).getEnd(), nodeToRange.get(n2).getEnd());
-			if (result != 0) {
-				return result;
-			}
-			// n1 and n2 have the same range
-			if (contains(n1, n2)) {
-				if (n1 instanceof ClassNode && n2 instanceof ConstructorNode) {
-					return -1;
+	/**
+	 * The workspace symbols declared in each file.
+	 */
+	public List<ASTSymbolIndex> getSymbolIndexes() {
+		List<ASTSymbolIndex> result = new ArrayList<>(symbolIndexByURI.values());
+		if (baseVisitor != null) {
+			baseVisitor.symbolIndexByURI.forEach((uri, symbolIndex) -> {
+				if (!symbolIndexByURI.containsKey(uri)) {
+					result.add(symbolIndex);
 				}
-				return 1;
-			} else if (contains(n2, n1)) {
-				if (n2 instanceof ClassNode && n1 instanceof ConstructorNode) {
-					return 1;
-				}
-				return -1;
+			});
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the members of a class, including inherited ones. The table is
+	 * built the first time that a class is requested from this version.
+	 */
+	public ClassMemberTable getMemberTable(ClassNode classNode) {
+		String name = classNode.getName();
+		ClassMemberTable memberTable = memberTablesByName.get(name);
+		if (memberTable != null) {
+			return memberTable;
+		}
+		// a class that failed to resolve, like one from a scratch compile, has
+		// no members, so the visited class with the same name is preferred
+		ClassNode visitedClassNode = getClassNode(name);
+		ClassNode tableClassNode = visitedClassNode != null ? visitedClassNode : classNode.redirect();
+		if (visitedClassNode == null && !tableClassNode.isResolved() && !tableClassNode.isPrimaryClassNode()) {
+			// not cached, so that a resolved node may still build the table
+			return new ClassMemberTable(tableClassNode);
+		}
+		return memberTablesByName.computeIfAbsent(name, key -> new ClassMemberTable(tableClassNode));
+	}
+
+	public ASTNode getNodeAtLineAndColumn(URI uri, int line, int column) {
+		ASTNodeRangeIndex rangeIndex = rangeIndexByURI.get(uri);
+		if (rangeIndex == null) {
+			if (baseVisitor != null && !nodesByURI.containsKey(uri)) {
+				return baseVisitor.getNodeAtLineAndColumn(uri, line, column);
 			}
-			return 0;
-		}).collect(Collectors.toList());
-		if (foundNodes.size() == 0) {
 			return null;
 		}
-		return foundNodes.get(0);
+		return rangeIndex.getNodeAtLineAndColumn(line, column, sameRangeComparator);
 	}
 
 	public ASTNode getParent(ASTNode child) {
 		if (child == null) {
 			return null;
 		}
-		ASTNodeLookupData data = lookup.get(new ASTLookupKey(child));
-		if (data == null) {
+		int id = nodeTable.getId(child);
+		if (id == -1) {
+			if (baseVisitor != null) {
+				return baseVisitor.getParent(child);
+			}
+			return null;
+		}
+		int parentId = nodeTable.getParentId(id);
+		if (parentId == -1) {
 			return null;
 		}
-		return data.parent;
+		return nodeTable.getNode(parentId);
 	}
 
 	public boolean contains(ASTNode ancestor, ASTNode descendant) {
-		ASTNode current = getParent(descendant);
-		while (current != null) {
-			if (current.equals(ancestor)) {
+		int id = nodeTable.getId(descendant);
+		if (id == -1) {
+			if (baseVisitor != null) {
+				return baseVisitor.contains(ancestor, descendant);
+			}
+			return false;
+		}
+		int currentId = nodeTable.getParentId(id);
+		while (currentId != -1) {
+			if (nodeTable.getNode(currentId).equals(ancestor)) {
 				return true;
 			}
-			current = getParent(current);
+			if (!nodeTable.isRecorded(currentId)) {
+				// a synthetic node has no parent of its own
+				break;
+			}
+			currentId = nodeTable.getParentId(currentId);
 		}
 		return false;
 	}
 
 	public URI getURI(ASTNode node) {
-		ASTNodeLookupData data = lookup.get(new ASTLookupKey(node));
-		if (data == null) {
+		int id = nodeTable.getId(node);
+		if (id == -1) {
+			if (baseVisitor != null) {
+				return baseVisitor.getURI(node);
+			}
 			return null;
 		}
-		return data.uri;
+		return nodeTable.getURI(id);
+	}
+
+	/**
+	 * Returns every node whose definition is equal to the specified
+	 * definition, including the definition itself.
+	 */
+	public List<ASTNode> getReferences(ASTNode definitionNode) {
+		Object key = getReferenceKey(definitionNode);
+		List<ASTNode> result = new ArrayList<>();
+		referencesByURI.values().forEach(referencesByDefinition -> {
+			List<ASTNode> references = referencesByDefinition.get(key);
+			if (references != null) {
+				result.addAll(references);
+			}
+		});
+		if (baseVisitor != null) {
+			baseVisitor.referencesByURI.forEach((uri, referencesByDefinition) -> {
+				if (nodesByURI.containsKey(uri)) {
+					return;
+				}
+				List<ASTNode> references = referencesByDefinition.get(key);
+				if (references != null) {
+					result.addAll(references);
+				}
+			});
+		}
+		return result;
 	}
 
 	public void visitCompilationUnit(CompilationUnit unit) {
 		nodesByURI.clear();
 		classNodesByURI.clear();
-		lookup.clear();
+		classNodesByName.clear();
+		allClassNodes = null;
+		nodeTable.clear();
+		rangeIndexByURI.clear();
+		symbolIndexByURI.clear();
+		memberTablesByName.clear();
+		referencesByURI.clear();
 		unit.iterator().forEachRemaining(sourceUnit -> {
+			checkCanceled();
 			visitSourceUnit(sourceUnit);
 		});
+		// definitions may be in any file, so they're resolved after all of
+		// the files have been visited
+		nodesByURI.keySet().forEach(uri -> {
+			checkCanceled();
+			indexReferences(uri);
+		});
+	}
+
+	public void visitCompilationUnit(CompilationUnit unit, CancelChecker cancelChecker) {
+		this.cancelChecker = cancelChecker;
+		try {
+			visitCompilationUnit(unit);
+		} finally {
+			this.cancelChecker = null;
+		}
+	}
+
+	public void visitCompilationUnit(CompilationUnit unit, Collection<URI> uris, CancelChecker cancelChecker) {
+		this.cancelChecker = cancelChecker;
+		try {
+			visitCompilationUnit(unit, uris);
+		} finally {
+			this.cancelChecker = null;
+		}
 	}
 
 	public void visitCompilationUnit(CompilationUnit unit, Collection<URI> uris) {
+		visitCompilationUnit(unit, uris, true);
+	}
+
+	/**
+	 * Visits files without indexing their references, which resolves the
+	 * definition of every node. A file that was only parsed has nothing to
+	 * resolve, and a scratch compile is never asked for references.
+	 */
+	public void visitCompilationUnitWithoutReferences(CompilationUnit unit, Collection<URI> uris,
+			CancelChecker cancelChecker) {
+		this.cancelChecker = cancelChecker;
+		try {
+			visitCompilationUnit(unit, uris, false);
+		} finally {
+			this.cancelChecker = null;
+		}
+	}
+
+	private void visitCompilationUnit(CompilationUnit unit, Collection<URI> uris, boolean indexReferences) {
+		// a changed class may be the superclass of any other class
+		memberTablesByName.clear();
 		uris.forEach(uri -> {
 			// clear all old nodes so that they may be replaced
-			List<ASTNode> nodes = nodesByURI.remove(uri);
-			if (nodes != null) {
-				nodes.forEach(node -> {
-					lookup.remove(new ASTLookupKey(node));
-				});
-			}
-			classNodesByURI.remove(uri);
+			nodesByURI.remove(uri);
+			nodeTable.remove(uri);
+			removeClassNodes(uri);
+			rangeIndexByURI.remove(uri);
+			symbolIndexByURI.remove(uri);
+			referencesByURI.remove(uri);
 		});
 		unit.iterator().forEachRemaining(sourceUnit -> {
 			URI uri = sourceUnit.getSource().getURI();
 			if (!uris.contains(uri)) {
 				return;
 			}
+			checkCanceled();
 			visitSourceUnit(sourceUnit);
 		});
+		if (!indexReferences) {
+			return;
+		}
+		uris.forEach(uri -> {
+			if (nodesByURI.containsKey(uri)) {
+				checkCanceled();
+				indexReferences(uri);
+			}
+		});
+	}
+
+	private void removeClassNodes(URI uri) {
+		List<ClassNode> classNodes = classNodesByURI.remove(uri);
+		if (classNodes == null) {
+			return;
+		}
+		classNodes.forEach(classNode -> {
+			List<ClassNode> classNodesWithName = classNodesByName.get(classNode.getName());
+			if (classNodesWithName == null) {
+				return;
+			}
+			// the lists may be shared with other copies, so they're replaced
+			// instead of modified
+			List<ClassNode> newClassNodesWithName = new ArrayList<>(classNodesWithName);
+			newClassNodesWithName.removeIf(other -> other == classNode);
+			if (newClassNodesWithName.isEmpty()) {
+				classNodesByName.remove(classNode.getName());
+			} else {
+				classNodesByName.put(classNode.getName(), newClassNodesWithName);
+			}
+		});
+		allClassNodes = null;
+	}
+
+	private void indexReferences(URI uri) {
+		Map<Object, List<ASTNode>> referencesByDefinition = new HashMap<>();
+		for (ASTNode node : nodesByURI.get(uri)) {
+			ASTNode definition = null;
+			try {
+				definition = GroovyASTUtils.getDefinition(node, false, this);
+			} catch (Exception e) {
+				// a node that can't be resolved isn't a reference
+			}
+			if (definition == null) {
+				continue;
+			}
+			referencesByDefinition.computeIfAbsent(getReferenceKey(definition), key -> new ArrayList<>()).add(node);
+		}
+		referencesByURI.put(uri, referencesByDefinition);
+	}
+
+	/**
+	 * When a file is compiled again, its classes and members are replaced by
+	 * new nodes, but the references from other files aren't indexed again, so
+	 * they're keyed by name and signature instead of by node. Anything else,
+	 * like a local variable, can only be referenced from its own file.
+	 */
+	private static Object getReferenceKey(ASTNode definition) {
+		if (definition instanceof ClassNode) {
+			return "class " + ((ClassNode) definition).getName();
+		}
+		if (definition instanceof MethodNode) {
+			MethodNode methodNode = (MethodNode) definition;
+			ClassNode declaringClass = methodNode.getDeclaringClass();
+			if (declaringClass == null) {
+				return definition;
+			}
+			StringBuilder builder = new StringBuilder();
+			builder.append("method ");
+			builder.append(declaringClass.getName());
+			builder.append("#");
+			builder.append(methodNode.getName());
+			builder.append("(");
+			Parameter[] parameters = methodNode.getParameters();
+			for (int i = 0; i < parameters.length; i++) {
+				if (i > 0) {
+					builder.append(",");
+				}
+				builder.append(parameters[i].getType().getName());
+			}
+			builder.append(")");
+			return builder.toString();
+		}
+		if (definition instanceof FieldNode) {
+			FieldNode fieldNode = (FieldNode) definition;
+			ClassNode declaringClass = fieldNode.getDeclaringClass();
+			if (declaringClass == null) {
+				return definition;
+			}
+			return "field " + declaringClass.getName() + "#" + fieldNode.getName();
+		}
+		if (definition instanceof PropertyNode) {
+			PropertyNode propertyNode = (PropertyNode) definition;
+			ClassNode declaringClass = propertyNode.getDeclaringClass();
+			if (declaringClass == null) {
+				return definition;
+			}
+			return "property " + declaringClass.getName() + "#" + propertyNode.getName();
+		}
+		return definition;
 	}
 
 	public void visitSourceUnit(SourceUnit unit) {
 		sourceUnit = unit;
 		URI uri = sourceUnit.getSource().getURI();
 		nodesByURI.put(uri, new ArrayList<>());
+		removeClassNodes(uri);
 		classNodesByURI.put(uri, new ArrayList<>());
-		stack.clear();
+		stackSize = 0;
+		nodeTable.startURI(uri);
 		ModuleNode moduleNode = unit.getAST();
 		if (moduleNode != null) {
 			visitModule(moduleNode);
 		}
+		nodeTable.endURI(uri);
+		rangeIndexByURI.put(uri, new ASTNodeRangeIndex(nodesByURI.get(uri)));
+		symbolIndexByURI.put(uri, new ASTSymbolIndex(uri, nodesByURI.get(uri), this));
 		sourceUnit = null;
-		stack.clear();
+		stackSize = 0;
 	}
 
 	public void visitModule(ModuleNode node) {
@@ -328,8 +617,17 @@ public class ASTNodeVisitor extends ClassCodeVisitorSupport {
 	// GroovyClassVisitor
 
 	public void visitClass(ClassNode node) {
+		checkCanceled();
 		URI uri = sourceUnit.getSource().getURI();
 		classNodesByURI.get(uri).add(node);
+		List<ClassNode> classNodesWithName = new ArrayList<>(1);
+		List<ClassNode> oldClassNodesWithName = classNodesByName.get(node.getName());
+		if (oldClassNodesWithName != null) {
+			classNodesWithName.addAll(oldClassNodesWithName);
+		}
+		classNodesWithName.add(node);
+		classNodesByName.put(node.getName(), classNodesWithName);
+		allClassNodes = null;
 		pushASTNode(node);
 		try {
 			ClassNode unresolvedSuperClass = node.getUnresolvedSuperClass();
@@ -0,0 +1,443 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+import net.prominic.groovyls.compiler.util.GroovyASTUtils;
+
+/**
+ * The classes, methods, fields, and properties declared in a single file,
+ * indexed by the trigrams of their names and by the first letter of each
+ * camel case word.
+ */
+public class ASTSymbolIndex {
+	private static final int SCORE_EXACT = 5000;
+	private static final int SCORE_PREFIX = 4000;
+	private static final int SCORE_CAMEL_CASE = 3000;
+	private static final int SCORE_CONTAINS = 2000;
+	private static final int SCORE_FUZZY = 1000;
+
+	private static final Comparator<Match> BEST_FIRST = (m1, m2) -> {
+		int result = Integer.compare(m2.score, m1.score);
+		if (result != 0) {
+			return result;
+		}
+		result = Integer.compare(m1.name.length(), m2.name.length());
+		if (result != 0) {
+			return result;
+		}
+		result = m1.name.compareTo(m2.name);
+		if (result != 0) {
+			return result;
+		}
+		result = m1.uri.compareTo(m2.uri);
+		if (result != 0) {
+			return result;
+		}
+		return Integer.compare(m1.index, m2.index);
+	};
+
+	public static class Match {
+		private final ASTNode node;
+		private final URI uri;
+		private final String name;
+		private final String containerName;
+		private final int score;
+		private final int index;
+
+		private Match(ASTNode node, URI uri, String name, String containerName, int score, int index) {
+			this.node = node;
+			this.uri = uri;
+			this.name = name;
+			this.containerName = containerName;
+			this.score = score;
+			this.index = index;
+		}
+
+		public ASTNode getNode() {
+			return node;
+		}
+
+		public URI getURI() {
+			return uri;
+		}
+
+		/**
+		 * The name of the enclosing class, or null for a class.
+		 */
+		public String getContainerName() {
+			return containerName;
+		}
+	}
+
+	private URI uri;
+	private ASTNode[] nodes;
+	private String[] names;
+	private String[] lowerCaseNames;
+	private String[] lowerCaseShortNames;
+	private String[] containerNames;
+	private boolean[][] wordStarts;
+	private int[] trigramCounts;
+	// a posting list for each key is stored from postingStarts[i] to
+	// postingStarts[i + 1]
+	private long[] trigramKeys;
+	private int[] trigramPostingStarts;
+	private int[] trigramPostings;
+	private long[] wordStartKeys;
+	private int[] wordStartPostingStarts;
+	private int[] wordStartPostings;
+
+	public ASTSymbolIndex(URI uri, List<ASTNode> nodesInFile, ASTNodeVisitor ast) {
+		this.uri = uri;
+		List<ASTNode> symbolNodes = new ArrayList<>();
+		for (ASTNode node : nodesInFile) {
+			// a symbol without a location can't be returned
+			if (getName(node) != null && node.getLineNumber() != -1) {
+				symbolNodes.add(node);
+			}
+		}
+		int count = symbolNodes.size();
+		nodes = symbolNodes.toArray(new ASTNode[count]);
+		names = new String[count];
+		lowerCaseNames = new String[count];
+		lowerCaseShortNames = new String[count];
+		containerNames = new String[count];
+		wordStarts = new boolean[count][];
+		trigramCounts = new int[count];
+		List<long[]> trigramPairs = new ArrayList<>();
+		List<long[]> wordStartPairs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			ASTNode node = nodes[i];
+			String name = getName(node);
+			String shortName = name;
+			if (node instanceof ClassNode) {
+				shortName = ((ClassNode) node).getNameWithoutPackage();
+			} else {
+				ClassNode classNode = (ClassNode) GroovyASTUtils.getEnclosingNodeOfType(node, ClassNode.class, ast);
+				if (classNode != null) {
+					containerNames[i] = classNode.getName();
+				}
+			}
+			names[i] = name;
+			lowerCaseNames[i] = name.toLowerCase();
+			lowerCaseShortNames[i] = shortName.toLowerCase();
+			wordStarts[i] = findWordStarts(shortName);
+
+			long[] trigrams = toTrigrams(lowerCaseNames[i]);
+			trigramCounts[i] = trigrams.length;
+			for (long trigram : trigrams) {
+				trigramPairs.add(new long[] { trigram, i });
+			}
+			boolean[] starts = wordStarts[i];
+			long[] startChars = new long[starts.length];
+			int startCharCount = 0;
+			for (int j = 0; j < starts.length; j++) {
+				if (starts[j]) {
+					startChars[startCharCount++] = lowerCaseShortNames[i].charAt(j);
+				}
+			}
+			startChars = distinct(Arrays.copyOf(startChars, startCharCount));
+			for (long startChar : startChars) {
+				wordStartPairs.add(new long[] { startChar, i });
+			}
+		}
+		Postings trigramPostingLists = new Postings(trigramPairs);
+		trigramKeys = trigramPostingLists.keys;
+		trigramPostingStarts = trigramPostingLists.starts;
+		trigramPostings = trigramPostingLists.postings;
+		Postings wordStartPostingLists = new Postings(wordStartPairs);
+		wordStartKeys = wordStartPostingLists.keys;
+		wordStartPostingStarts = wordStartPostingLists.starts;
+		wordStartPostings = wordStartPostingLists.postings;
+	}
+
+	public URI getURI() {
+		return uri;
+	}
+
+	/**
+	 * Returns up to maxResults symbols from all of the indexes that match the
+	 * query, with the best matches first. An empty query matches everything.
+	 */
+	public static List<Match> search(Collection<ASTSymbolIndex> indexes, String query, int maxResults,
+			CancelChecker cancelChecker) {
+		if (maxResults <= 0) {
+			return Collections.emptyList();
+		}
+		String lowerCaseQuery = query.toLowerCase();
+		long[] queryTrigrams = toTrigrams(lowerCaseQuery);
+		// the worst match is first, so that it may be replaced
+		PriorityQueue<Match> bestMatches = new PriorityQueue<>(maxResults + 1, BEST_FIRST.reversed());
+		for (ASTSymbolIndex index : indexes) {
+			if (cancelChecker != null) {
+				cancelChecker.checkCanceled();
+			}
+			index.search(lowerCaseQuery, queryTrigrams, bestMatches, maxResults);
+		}
+		List<Match> result = new ArrayList<>(bestMatches);
+		result.sort(BEST_FIRST);
+		return result;
+	}
+
+	private void search(String query, long[] queryTrigrams, PriorityQueue<Match> bestMatches, int maxResults) {
+		int count = nodes.length;
+		if (queryTrigrams.length == 0) {
+			// too short for trigrams, but the names are short strings that
+			// are quick to check directly
+			for (int i = 0; i < count; i++) {
+				addMatch(i, score(i, query, 0, 0), bestMatches, maxResults);
+			}
+			return;
+		}
+		int[] sharedTrigrams = new int[count];
+		boolean[] isCandidate = new boolean[count];
+		int[] candidates = new int[count];
+		int candidateCount = 0;
+		for (long trigram : queryTrigrams) {
+			int keyIndex = Arrays.binarySearch(trigramKeys, trigram);
+			if (keyIndex < 0) {
+				continue;
+			}
+			for (int j = trigramPostingStarts[keyIndex]; j < trigramPostingStarts[keyIndex + 1]; j++) {
+				int i = trigramPostings[j];
+				sharedTrigrams[i]++;
+				if (!isCandidate[i]) {
+					isCandidate[i] = true;
+					candidates[candidateCount++] = i;
+				}
+			}
+		}
+		// a camel case match may not share any trigrams, but it must start
+		// at the beginning of a word
+		int keyIndex = Arrays.binarySearch(wordStartKeys, query.charAt(0));
+		if (keyIndex >= 0) {
+			for (int j = wordStartPostingStarts[keyIndex]; j < wordStartPostingStarts[keyIndex + 1]; j++) {
+				int i = wordStartPostings[j];
+				if (!isCandidate[i]) {
+					isCandidate[i] = true;
+					candidates[candidateCount++] = i;
+				}
+			}
+		}
+		for (int j = 0; j < candidateCount; j++) {
+			int i = candidates[j];
+			addMatch(i, score(i, query, sharedTrigrams[i], queryTrigrams.length), bestMatches, maxResults);
+		}
+	}
+
+	private void addMatch(int i, int score, PriorityQueue<Match> bestMatches, int maxResults) {
+		if (score <= 0) {
+			return;
+		}
+		Match match = new Match(nodes[i], uri, names[i], containerNames[i], score, i);
+		if (bestMatches.size() < maxResults) {
+			bestMatches.add(match);
+		} else if (BEST_FIRST.compare(match, bestMatches.peek()) < 0) {
+			bestMatches.poll();
+			bestMatches.add(match);
+		}
+	}
+
+	/**
+	 * Returns 0 if the name doesn't match.
+	 */
+	private int score(int i, String query, int sharedTrigrams, int queryTrigramCount) {
+		String name = lowerCaseNames[i];
+		String shortName = lowerCaseShortNames[i];
+		if (query.isEmpty()) {
+			return SCORE_CONTAINS;
+		}
+		if (name.equals(query) || shortName.equals(query)) {
+			return SCORE_EXACT;
+		}
+		if (name.startsWith(query) || shortName.startsWith(query)) {
+			return SCORE_PREFIX;
+		}
+		if (matchesWordStarts(shortName, wordStarts[i], query)) {
+			return SCORE_CAMEL_CASE;
+		}
+		if (name.contains(query)) {
+			return SCORE_CONTAINS;
+		}
+		// a misspelled query still shares most of its trigrams with the name
+		if (queryTrigramCount >= 2 && sharedTrigrams * 2 >= queryTrigramCount) {
+			int union = queryTrigramCount + trigramCounts[i] - sharedTrigrams;
+			return SCORE_FUZZY * sharedTrigrams / union;
+		}
+		return 0;
+	}
+
+	/**
+	 * Each character of the query continues the current word, or starts one
+	 * of the following words, like "gNBN" or "getNodeBN" for getNodeByName.
+	 */
+	private static boolean matchesWordStarts(String name, boolean[] wordStarts, String query) {
+		// positions that are already known not to match
+		boolean[] failed = new boolean[name.length() * query.length()];
+		for (int start = 0; start < name.length(); start++) {
+			if (wordStarts[start] && matchesWordStarts(name, wordStarts, query, start, 0, failed)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matchesWordStarts(String name, boolean[] wordStarts, String query, int nameIndex,
+			int queryIndex, boolean[] failed) {
+		if (queryIndex == query.length()) {
+			return true;
+		}
+		if (nameIndex == name.length()) {
+			return false;
+		}
+		int key = nameIndex * query.length() + queryIndex;
+		if (failed[key]) {
+			return false;
+		}
+		if (name.charAt(nameIndex) == query.charAt(queryIndex)) {
+			// the next character continues the current word
+			if (matchesWordStarts(name, wordStarts, query, nameIndex + 1, queryIndex + 1, failed)) {
+				return true;
+			}
+			// or it starts a later word
+			for (int next = nameIndex + 2; next < name.length(); next++) {
+				if (wordStarts[next] && matchesWordStarts(name, wordStarts, query, next, queryIndex + 1, failed)) {
+					return true;
+				}
+			}
+		}
+		failed[key] = true;
+		return false;
+	}
+
+	private static boolean[] findWordStarts(String name) {
+		boolean[] result = new boolean[name.length()];
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!Character.isLetterOrDigit(c)) {
+				continue;
+			}
+			if (i == 0) {
+				result[i] = true;
+				continue;
+			}
+			char prev = name.charAt(i - 1);
+			if (!Character.isLetterOrDigit(prev)) {
+				// after a separator, like _ or $ or .
+				result[i] = true;
+			} else if (Character.isUpperCase(c) && !Character.isUpperCase(prev)) {
+				result[i] = true;
+			} else if (Character.isUpperCase(c) && i + 1 < name.length()
+					&& Character.isLowerCase(name.charAt(i + 1))) {
+				// the last capital of an acronym, like the R in URLReader
+				result[i] = true;
+			} else if (Character.isDigit(c) && !Character.isDigit(prev)) {
+				result[i] = true;
+			}
+		}
+		return result;
+	}
+
+	private static long[] toTrigrams(String name) {
+		if (name.length() < 3) {
+			return new long[0];
+		}
+		long[] result = new long[name.length() - 2];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ((long) name.charAt(i) << 32) | ((long) name.charAt(i + 1) << 16) | name.charAt(i + 2);
+		}
+		return distinct(result);
+	}
+
+	private static long[] distinct(long[] values) {
+		if (values.length == 0) {
+			return values;
+		}
+		Arrays.sort(values);
+		int count = 1;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] != values[count - 1]) {
+				values[count++] = values[i];
+			}
+		}
+		return Arrays.copyOf(values, count);
+	}
+
+	private static String getName(ASTNode node) {
+		if (node instanceof ClassNode) {
+			return ((ClassNode) node).getName();
+		} else if (node instanceof MethodNode) {
+			return ((MethodNode) node).getName();
+		} else if (node instanceof FieldNode) {
+			return ((FieldNode) node).getName();
+		} else if (node instanceof PropertyNode) {
+			return ((PropertyNode) node).getName();
+		}
+		return null;
+	}
+
+	private static class Postings {
+		long[] keys;
+		int[] starts;
+		int[] postings;
+
+		Postings(List<long[]> keyAndPostingPairs) {
+			keyAndPostingPairs.sort((p1, p2) -> {
+				int result = Long.compare(p1[0], p2[0]);
+				if (result != 0) {
+					return result;
+				}
+				return Long.compare(p1[1], p2[1]);
+			});
+			int count = keyAndPostingPairs.size();
+			long[] allKeys = new long[count];
+			int[] allStarts = new int[count + 1];
+			postings = new int[count];
+			int keyCount = 0;
+			for (int i = 0; i < count; i++) {
+				long[] pair = keyAndPostingPairs.get(i);
+				if (keyCount == 0 || allKeys[keyCount - 1] != pair[0]) {
+					allKeys[keyCount] = pair[0];
+					allStarts[keyCount] = i;
+					keyCount++;
+				}
+				postings[i] = (int) pair[1];
+			}
+			allStarts[keyCount] = count;
+			keys = Arrays.copyOf(allKeys, keyCount);
+			starts = Arrays.copyOf(allStarts, keyCount + 1);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.PropertyNode;
+
+/**
+ * The methods, fields, and properties of a class, including the inherited
+ * ones, sorted by name. Members with the same name keep the order of the
+ * hierarchy, so the one declared closest to the class comes first.
+ */
+public class ClassMemberTable {
+	private Members<MethodNode> methods;
+	private Members<MethodNode> staticMethods;
+	private Members<FieldNode> fields;
+	private Members<FieldNode> staticFields;
+	private Members<PropertyNode> properties;
+	private Members<PropertyNode> staticProperties;
+
+	public ClassMemberTable(ClassNode classNode) {
+		List<MethodNode> allMethods = new ArrayList<>();
+		List<FieldNode> allFields = new ArrayList<>();
+		List<PropertyNode> allProperties = new ArrayList<>();
+		List<ClassNode> classNodes = new ArrayList<>();
+		classNodes.add(classNode);
+		int i = 0;
+		while (i < classNodes.size()) {
+			ClassNode current = classNodes.get(i);
+			allMethods.addAll(current.getMethods());
+			allFields.addAll(current.getFields());
+			allProperties.addAll(current.getProperties());
+
+			if (current.isInterface()) {
+				for (ClassNode interfaceNode : current.getInterfaces()) {
+					classNodes.add(interfaceNode);
+				}
+			} else {
+				ClassNode superClassNode = null;
+				try {
+					superClassNode = current.getSuperClass();
+				} catch (NoClassDefFoundError e) {
+					// this is fine, we'll just treat it as null
+				}
+				if (superClassNode != null) {
+					classNodes.add(superClassNode);
+				}
+			}
+			i++;
+		}
+		methods = new Members<>(allMethods, MethodNode::getName, methodNode -> !methodNode.isStatic());
+		staticMethods = new Members<>(allMethods, MethodNode::getName, MethodNode::isStatic);
+		fields = new Members<>(allFields, FieldNode::getName, fieldNode -> !fieldNode.isStatic());
+		staticFields = new Members<>(allFields, FieldNode::getName, FieldNode::isStatic);
+		properties = new Members<>(allProperties, PropertyNode::getName, propNode -> !propNode.isStatic());
+		staticProperties = new Members<>(allProperties, PropertyNode::getName, PropertyNode::isStatic);
+	}
+
+	public List<MethodNode> getMethods(boolean statics, String namePrefix) {
+		return (statics ? staticMethods : methods).getWithPrefix(namePrefix);
+	}
+
+	public List<FieldNode> getFields(boolean statics, String namePrefix) {
+		return (statics ? staticFields : fields).getWithPrefix(namePrefix);
+	}
+
+	public List<PropertyNode> getProperties(boolean statics, String namePrefix) {
+		return (statics ? staticProperties : properties).getWithPrefix(namePrefix);
+	}
+
+	private static class Members<T> {
+		private List<T> sorted;
+		private String[] names;
+
+		Members(List<T> members, Function<T, String> getName, Predicate<T> filter) {
+			List<T> filtered = new ArrayList<>();
+			for (T member : members) {
+				if (filter.test(member)) {
+					filtered.add(member);
+				}
+			}
+			// the sort is stable, so the hierarchy order is kept
+			filtered.sort(Comparator.comparing(getName));
+			sorted = Collections.unmodifiableList(filtered);
+			names = new String[filtered.size()];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = getName.apply(filtered.get(i));
+			}
+		}
+
+		List<T> getWithPrefix(String prefix) {
+			if (prefix.isEmpty()) {
+				return sorted;
+			}
+			int start = Arrays.binarySearch(names, prefix);
+			if (start < 0) {
+				start = -(start + 1);
+			} else {
+				// the first of the members with the same name
+				while (start > 0 && names[start - 1].equals(prefix)) {
+					start--;
+				}
+			}
+			int end = start;
+			while (end < names.length && names[end].startsWith(prefix)) {
+				end++;
+			}
+			return sorted.subList(start, end);
+		}
+	}
+}
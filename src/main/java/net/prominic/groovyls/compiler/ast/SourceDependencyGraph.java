@@ -0,0 +1,256 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.AnnotatedNode;
+import org.codehaus.groovy.ast.AnnotationNode;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.GenericsType;
+import org.codehaus.groovy.ast.ImportNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.Variable;
+import org.codehaus.groovy.ast.expr.AnnotationConstantExpression;
+import org.codehaus.groovy.ast.expr.ClassExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.ListExpression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+
+/**
+ * Records which files reference the classes that are defined in other files,
+ * so that the dependents of a changed file may be compiled again.
+ */
+public class SourceDependencyGraph {
+	private Map<URI, Set<String>> definedNamesByURI = new HashMap<>();
+	private Map<URI, Set<String>> referencedNamesByURI = new HashMap<>();
+	private Map<String, Set<URI>> referencingURIsByName = new HashMap<>();
+
+	public void clear() {
+		definedNamesByURI.clear();
+		referencedNamesByURI.clear();
+		referencingURIsByName.clear();
+	}
+
+	public void remove(URI uri) {
+		definedNamesByURI.remove(uri);
+		Set<String> oldReferencedNames = referencedNamesByURI.remove(uri);
+		if (oldReferencedNames == null) {
+			return;
+		}
+		for (String name : oldReferencedNames) {
+			Set<URI> uris = referencingURIsByName.get(name);
+			if (uris == null) {
+				continue;
+			}
+			uris.remove(uri);
+			if (uris.isEmpty()) {
+				referencingURIsByName.remove(name);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the dependencies of a file with the ones found in its current
+	 * AST.
+	 */
+	public void update(URI uri, ASTNodeVisitor ast) {
+		remove(uri);
+
+		Set<String> definedNames = new HashSet<>();
+		for (ClassNode classNode : ast.getClassNodes(uri)) {
+			definedNames.add(classNode.getNameWithoutPackage());
+		}
+		Set<String> referencedNames = new HashSet<>();
+		for (ASTNode node : ast.getNodes(uri)) {
+			addReferencedNames(node, referencedNames);
+		}
+		// a file doesn't need to depend on itself
+		referencedNames.removeAll(definedNames);
+
+		if (!definedNames.isEmpty()) {
+			definedNamesByURI.put(uri, definedNames);
+		}
+		if (!referencedNames.isEmpty()) {
+			referencedNamesByURI.put(uri, referencedNames);
+			for (String name : referencedNames) {
+				referencingURIsByName.computeIfAbsent(name, key -> new HashSet<>()).add(uri);
+			}
+		}
+	}
+
+	/**
+	 * Returns all files that directly or indirectly reference a class defined
+	 * in one of the specified files. The specified files are not included,
+	 * unless they depend on each other.
+	 */
+	public Set<URI> getDependentURIs(Collection<URI> uris) {
+		Set<URI> result = new LinkedHashSet<>();
+		Set<URI> visited = new HashSet<>();
+		Deque<URI> queue = new ArrayDeque<>(uris);
+		while (!queue.isEmpty()) {
+			URI current = queue.poll();
+			if (!visited.add(current)) {
+				continue;
+			}
+			Set<String> definedNames = definedNamesByURI.getOrDefault(current, Collections.emptySet());
+			for (String name : definedNames) {
+				Set<URI> dependents = referencingURIsByName.get(name);
+				if (dependents == null) {
+					continue;
+				}
+				for (URI dependent : dependents) {
+					if (result.add(dependent)) {
+						queue.add(dependent);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private void addReferencedNames(ASTNode node, Set<String> result) {
+		if (node instanceof AnnotatedNode) {
+			addReferencedNames(((AnnotatedNode) node).getAnnotations(), result);
+		}
+		if (node instanceof ClassNode) {
+			ClassNode classNode = (ClassNode) node;
+			addReferencedName(classNode, result);
+			addReferencedName(classNode.getUnresolvedSuperClass(), result);
+			for (ClassNode interfaceNode : classNode.getInterfaces()) {
+				addReferencedName(interfaceNode, result);
+			}
+		} else if (node instanceof MethodNode) {
+			MethodNode methodNode = (MethodNode) node;
+			addReferencedName(methodNode.getReturnType(), result);
+			addReferencedNames(methodNode.getGenericsTypes(), result);
+			for (Parameter parameter : methodNode.getParameters()) {
+				addReferencedName(parameter.getOriginType(), result);
+				addReferencedName(parameter.getType(), result);
+				addReferencedNames(parameter.getAnnotations(), result);
+			}
+			for (ClassNode exception : methodNode.getExceptions()) {
+				addReferencedName(exception, result);
+			}
+		} else if (node instanceof Variable) {
+			addReferencedName(((Variable) node).getOriginType(), result);
+			addReferencedName(((Variable) node).getType(), result);
+		} else if (node instanceof ImportNode) {
+			addReferencedName(((ImportNode) node).getType(), result);
+		}
+		if (node instanceof Expression) {
+			addReferencedName(((Expression) node).getType(), result);
+		}
+	}
+
+	private void addReferencedNames(List<AnnotationNode> annotations, Set<String> result) {
+		for (AnnotationNode annotation : annotations) {
+			addReferencedName(annotation.getClassNode(), result);
+			// the members aren't visited like other expressions
+			for (Expression member : annotation.getMembers().values()) {
+				addReferencedNames(member, result);
+			}
+		}
+	}
+
+	private void addReferencedNames(Expression expression, Set<String> result) {
+		if (expression instanceof ClassExpression) {
+			addReferencedName(expression.getType(), result);
+		} else if (expression instanceof ListExpression) {
+			for (Expression element : ((ListExpression) expression).getExpressions()) {
+				addReferencedNames(element, result);
+			}
+		} else if (expression instanceof PropertyExpression) {
+			// a constant or an enum value
+			addReferencedNames(((PropertyExpression) expression).getObjectExpression(), result);
+		} else if (expression instanceof AnnotationConstantExpression) {
+			AnnotationNode annotation = (AnnotationNode) ((AnnotationConstantExpression) expression).getValue();
+			addReferencedNames(Collections.singletonList(annotation), result);
+		}
+	}
+
+	private void addReferencedNames(GenericsType[] genericsTypes, Set<String> result) {
+		addReferencedNames(genericsTypes, result, Collections.newSetFromMap(new IdentityHashMap<>()));
+	}
+
+	private void addReferencedNames(GenericsType[] genericsTypes, Set<String> result,
+			Set<GenericsType> visitedGenericsTypes) {
+		if (genericsTypes == null) {
+			return;
+		}
+		for (GenericsType genericsType : genericsTypes) {
+			// a bound may refer to its own type parameter
+			if (!visitedGenericsTypes.add(genericsType)) {
+				continue;
+			}
+			if (!genericsType.isPlaceholder() && !genericsType.isWildcard()) {
+				addReferencedName(genericsType.getType(), result, visitedGenericsTypes);
+			}
+			ClassNode[] upperBounds = genericsType.getUpperBounds();
+			if (upperBounds != null) {
+				for (ClassNode upperBound : upperBounds) {
+					addReferencedName(upperBound, result, visitedGenericsTypes);
+				}
+			}
+			addReferencedName(genericsType.getLowerBound(), result, visitedGenericsTypes);
+		}
+	}
+
+	private void addReferencedName(ClassNode classNode, Set<String> result) {
+		addReferencedName(classNode, result, null);
+	}
+
+	private void addReferencedName(ClassNode classNode, Set<String> result, Set<GenericsType> visitedGenericsTypes) {
+		if (classNode == null) {
+			return;
+		}
+		while (classNode.isArray()) {
+			classNode = classNode.getComponentType();
+		}
+		if (!classNode.isGenericsPlaceHolder()) {
+			// unresolved classes don't have a package, so simple names are
+			// used to match them with the class that they may resolve to later
+			result.add(classNode.getNameWithoutPackage());
+		}
+		// the type arguments, or the bounds of the type parameters where they
+		// are declared
+		GenericsType[] genericsTypes = classNode.getGenericsTypes();
+		if (genericsTypes == null) {
+			return;
+		}
+		if (visitedGenericsTypes == null) {
+			visitedGenericsTypes = Collections.newSetFromMap(new IdentityHashMap<>());
+		}
+		addReferencedNames(genericsTypes, result, visitedGenericsTypes);
+	}
+}
@@ -22,8 +22,10 @@ package net.prominic.groovyls.compiler.control;
 import groovy.lang.GroovyClassLoader;
 import org.codehaus.groovy.ast.CompileUnit;
 import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilationUnit;
 import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.groovy.tools.GroovyClass;
 
@@ -48,6 +50,13 @@ public class GroovyLSCompilationUnit extends CompilationUnit {
 		this.errorCollector = errorCollector;
 	}
 
+	@Override
+	public void compile(int throughPhase) throws CompilationFailedException {
+		// generated classes may be kept in memory, but they are never
+		// written to the target directory
+		super.compile(Math.min(throughPhase, Phases.CLASS_GENERATION));
+	}
+
 	public void removeSources(Collection<SourceUnit> sourceUnitsToRemove) {
 		for (SourceUnit sourceUnit : sourceUnitsToRemove) {
 			if (sourceUnit.getAST() != null) {
@@ -22,10 +22,13 @@ package net.prominic.groovyls.compiler.control;
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.messages.Message;
+import org.codehaus.groovy.control.messages.WarningMessage;
 
 /**
  * A special ErrorCollector for language servers that can clear all errors and
- * does not throw exceptions.
+ * does not throw exceptions. Messages may be added from multiple threads while
+ * source units are parsed in parallel.
  */
 public class LanguageServerErrorCollector extends ErrorCollector {
     private static final long serialVersionUID = 1L;
@@ -34,7 +37,7 @@ public class LanguageServerErrorCollector extends ErrorCollector {
         super(configuration);
     }
 
-    public void clear() {
+    public synchronized void clear() {
         if (errors != null) {
             errors.clear();
         }
@@ -43,6 +46,21 @@ public class LanguageServerErrorCollector extends ErrorCollector {
         }
     }
 
+    @Override
+    public synchronized void addErrorAndContinue(Message message) {
+        super.addErrorAndContinue(message);
+    }
+
+    @Override
+    public synchronized void addWarning(WarningMessage message) {
+        super.addWarning(message);
+    }
+
+    @Override
+    public synchronized void addCollectorContents(ErrorCollector errorCollector) {
+        super.addCollectorContents(errorCollector);
+    }
+
     @Override
     protected void failIfErrors() throws CompilationFailedException {
         // don't fail
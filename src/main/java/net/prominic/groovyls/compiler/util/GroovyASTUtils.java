@@ -19,7 +19,6 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.compiler.util;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -48,6 +47,7 @@ import org.codehaus.groovy.ast.expr.VariableExpression;
 import org.codehaus.groovy.ast.stmt.ExpressionStatement;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
@@ -134,22 +134,23 @@ public class GroovyASTUtils {
         return null;
     }
 
-    public static List<ASTNode> getReferences(ASTNode node, ASTNodeVisitor ast) {
+    public static List<ASTNode> getReferences(ASTNode node, ASTNodeVisitor ast, CancelChecker cancelChecker) {
         ASTNode definitionNode = getDefinition(node, true, ast);
         if (definitionNode == null) {
             return Collections.emptyList();
         }
-        return ast.getNodes().stream().filter(otherNode -> {
-            ASTNode otherDefinition = getDefinition(otherNode, false, ast);
-            return definitionNode.equals(otherDefinition) && node.getLineNumber() != -1 && node.getColumnNumber() != -1;
-        }).collect(Collectors.toList());
+        if (node.getLineNumber() == -1 || node.getColumnNumber() == -1) {
+            return Collections.emptyList();
+        }
+        cancelChecker.checkCanceled();
+        // the definition of every node was resolved when it was visited
+        return ast.getReferences(definitionNode);
     }
 
     private static ClassNode tryToResolveOriginalClassNode(ClassNode node, boolean strict, ASTNodeVisitor ast) {
-        for (ClassNode originalNode : ast.getClassNodes()) {
-            if (originalNode.equals(node)) {
-                return originalNode;
-            }
+        ClassNode originalNode = ast.getClassNode(node.getName());
+        if (originalNode != null) {
+            return originalNode;
         }
         if (strict) {
             return null;
@@ -173,124 +174,6 @@ public class GroovyASTUtils {
         return null;
     }
 
-    public static List<FieldNode> getFieldsForLeftSideOfPropertyExpression(Expression node, ASTNodeVisitor astVisitor) {
-        ClassNode classNode = getTypeOfNode(node, astVisitor);
-        if (classNode != null) {
-            List<ClassNode> classNodes = new ArrayList<>();
-            classNodes.add(classNode);
-
-            boolean statics = node instanceof ClassExpression;
-
-            List<FieldNode> result = new ArrayList<>();
-            int i = 0;
-            while (i < classNodes.size()) {
-                ClassNode current = classNodes.get(i);
-
-                result.addAll(current.getFields().stream().filter(fieldNode -> {
-                    return statics ? fieldNode.isStatic() : !fieldNode.isStatic();
-                }).collect(Collectors.toList()));
-
-                if (current.isInterface()) {
-                    for (ClassNode interfaceNode : current.getInterfaces()) {
-                        classNodes.add(interfaceNode);
-                    }
-                } else {
-                    ClassNode superClassNode = null;
-                    try {
-                        superClassNode = current.getSuperClass();
-                    } catch (NoClassDefFoundError e) {
-                        // this is fine, we'll just treat it as null
-                    }
-                    if (superClassNode != null) {
-                        classNodes.add(superClassNode);
-                    }
-                }
-                i++;
-            }
-            return result;
-        }
-        return Collections.emptyList();
-    }
-
-    public static List<PropertyNode> getPropertiesForLeftSideOfPropertyExpression(Expression node,
-            ASTNodeVisitor astVisitor) {
-        ClassNode classNode = getTypeOfNode(node, astVisitor);
-        if (classNode != null) {
-            List<ClassNode> classNodes = new ArrayList<>();
-            classNodes.add(classNode);
-
-            boolean statics = node instanceof ClassExpression;
-
-            List<PropertyNode> result = new ArrayList<>();
-            int i = 0;
-            while (i < classNodes.size()) {
-                ClassNode current = classNodes.get(i);
-
-                result.addAll(current.getProperties().stream().filter(propNode -> {
-                    return statics ? propNode.isStatic() : !propNode.isStatic();
-                }).collect(Collectors.toList()));
-
-                if (current.isInterface()) {
-                    for (ClassNode interfaceNode : current.getInterfaces()) {
-                        classNodes.add(interfaceNode);
-                    }
-                } else {
-                    ClassNode superClassNode = null;
-                    try {
-                        superClassNode = current.getSuperClass();
-                    } catch (NoClassDefFoundError e) {
-                        // this is fine, we'll just treat it as null
-                    }
-                    if (superClassNode != null) {
-                        classNodes.add(superClassNode);
-                    }
-                }
-                i++;
-            }
-        }
-        return Collections.emptyList();
-    }
-
-    public static List<MethodNode> getMethodsForLeftSideOfPropertyExpression(Expression node,
-            ASTNodeVisitor astVisitor) {
-        ClassNode classNode = getTypeOfNode(node, astVisitor);
-        if (classNode != null) {
-            List<ClassNode> classNodes = new ArrayList<>();
-            classNodes.add(classNode);
-
-            boolean statics = node instanceof ClassExpression;
-
-            List<MethodNode> result = new ArrayList<>();
-            int i = 0;
-            while (i < classNodes.size()) {
-                ClassNode current = classNodes.get(i);
-
-                result.addAll(current.getMethods().stream().filter(methodNode -> {
-                    return statics ? methodNode.isStatic() : !methodNode.isStatic();
-                }).collect(Collectors.toList()));
-
-                if (current.isInterface()) {
-                    for (ClassNode interfaceNode : current.getInterfaces()) {
-                        classNodes.add(interfaceNode);
-                    }
-                } else {
-                    ClassNode superClassNode = null;
-                    try {
-                        superClassNode = current.getSuperClass();
-                    } catch (NoClassDefFoundError e) {
-                        // this is fine, we'll just treat it as null
-                    }
-                    if (superClassNode != null) {
-                        classNodes.add(superClassNode);
-                    }
-                }
-                i++;
-            }
-            return result;
-        }
-        return Collections.emptyList();
-    }
-
     public static ClassNode getTypeOfNode(ASTNode node, ASTNodeVisitor astVisitor) {
         if (node instanceof BinaryExpression) {
             BinaryExpression binaryExpr = (BinaryExpression) node;
@@ -27,9 +27,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.control.SourceUnit;
@@ -46,6 +48,8 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 	private CompilerConfiguration config;
 	private GroovyClassLoader classLoader;
 	private List<String> additionalClasspathList;
+	private Path indexedRoot;
+	private Set<URI> workspaceURIs;
 
 	public CompilationUnitFactory() {
 	}
@@ -112,12 +116,32 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		return compilationUnit;
 	}
 
+	public GroovyLSCompilationUnit createForSingleFile(URI uri, String contents) {
+		if (config == null) {
+			config = getConfiguration();
+		}
+
+		if (classLoader == null) {
+			classLoader = new GroovyClassLoader(ClassLoader.getSystemClassLoader().getParent(), config, true);
+		}
+
+		GroovyLSCompilationUnit singleFileUnit = new GroovyLSCompilationUnit(config, null, classLoader);
+		addOpenFileToCompilationUnit(uri, contents, singleFileUnit);
+		return singleFileUnit;
+	}
+
 	protected CompilerConfiguration getConfiguration() {
 		CompilerConfiguration config = new CompilerConfiguration();
 
 		Map<String, Boolean> optimizationOptions = new HashMap<>();
 		optimizationOptions.put(CompilerConfiguration.GROOVYDOC, true);
+		// when more than one source unit needs to be parsed, the compiler
+		// builds their ASTs in parallel before adding the modules to the
+		// CompileUnit one at a time
+		optimizationOptions.put(CompilerConfiguration.PARALLEL_PARSE, true);
 		config.setOptimizationOptions(optimizationOptions);
+		// nothing is written to disk, so there's no need for a target
+		config.setTargetDirectory((File) null);
 
 		List<String> classpathList = new ArrayList<>();
 		getClasspathList(classpathList);
@@ -157,32 +181,91 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		}
 	}
 
-	protected void addDirectoryToCompilationUnit(Path dirPath, GroovyLSCompilationUnit compilationUnit,
-			FileContentsTracker fileContentsTracker, Set<URI> changedUris) {
-		try {
-			if (Files.exists(dirPath)) {
-				Files.walk(dirPath).forEach((filePath) -> {
-					if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
-						return;
-					}
-					URI fileURI = filePath.toUri();
-					if (!fileContentsTracker.isOpen(fileURI)) {
-						File file = filePath.toFile();
-						if (file.isFile()) {
-							if (changedUris == null || changedUris.contains(fileURI)) {
-								compilationUnit.addSource(file);
-							}
-						}
+	public Set<URI> updateWorkspaceURIs(Path workspaceRoot, Set<URI> changedURIs) {
+		Set<URI> affectedURIs = new LinkedHashSet<>();
+		if (workspaceRoot == null || !isWorkspaceIndexed(workspaceRoot)) {
+			// there's no index yet, so it will be built by the next create()
+			affectedURIs.addAll(changedURIs);
+			return affectedURIs;
+		}
+		Path normalizedRoot = workspaceRoot.normalize();
+		for (URI uri : changedURIs) {
+			Path changedPath = Paths.get(uri).normalize();
+			if (!changedPath.startsWith(normalizedRoot)) {
+				affectedURIs.add(uri);
+				continue;
+			}
+			if (Files.isDirectory(changedPath)) {
+				// a created directory may already contain files
+				Set<URI> createdURIs = walkSourceFiles(changedPath);
+				workspaceURIs.addAll(createdURIs);
+				affectedURIs.addAll(createdURIs);
+			} else if (Files.isRegularFile(changedPath)) {
+				if (changedPath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
+					workspaceURIs.add(uri);
+					affectedURIs.add(uri);
+				}
+			} else if (changedPath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
+				workspaceURIs.remove(uri);
+				workspaceURIs.remove(changedPath.toUri());
+				affectedURIs.add(uri);
+			} else {
+				// a deleted directory doesn't report its files separately
+				workspaceURIs.removeIf(indexedURI -> {
+					if (!Paths.get(indexedURI).normalize().startsWith(changedPath)) {
+						return false;
 					}
+					affectedURIs.add(indexedURI);
+					return true;
 				});
 			}
+		}
+		return affectedURIs;
+	}
 
-		} catch (IOException e) {
-			System.err.println("Failed to walk directory for source files: " + dirPath);
+	protected void addDirectoryToCompilationUnit(Path dirPath, GroovyLSCompilationUnit compilationUnit,
+			FileContentsTracker fileContentsTracker, Set<URI> changedUris) {
+		Path normalizedDirPath = dirPath.normalize();
+		if (changedUris == null) {
+			if (!isWorkspaceIndexed(dirPath)) {
+				indexedRoot = normalizedDirPath;
+				workspaceURIs = walkSourceFiles(dirPath);
+			}
+			for (URI fileURI : workspaceURIs) {
+				if (fileContentsTracker.isOpen(fileURI)) {
+					continue;
+				}
+				File file = Paths.get(fileURI).toFile();
+				if (file.isFile()) {
+					compilationUnit.addSource(file);
+				}
+			}
+		} else {
+			// only the changed files need to be checked, instead of walking
+			// the whole directory again
+			for (URI fileURI : changedUris) {
+				if (fileContentsTracker.isOpen(fileURI)) {
+					continue;
+				}
+				Path filePath = Paths.get(fileURI);
+				if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)
+						|| !filePath.normalize().startsWith(normalizedDirPath)) {
+					continue;
+				}
+				File file = filePath.toFile();
+				if (file.isFile()) {
+					if (workspaceURIs != null) {
+						workspaceURIs.add(fileURI);
+					}
+					compilationUnit.addSource(file);
+				} else if (workspaceURIs != null) {
+					workspaceURIs.remove(fileURI);
+				}
+			}
 		}
 		fileContentsTracker.getOpenURIs().forEach(uri -> {
 			Path openPath = Paths.get(uri);
-			if (!openPath.normalize().startsWith(dirPath.normalize())) {
+			if (!openPath.normalize().startsWith(normalizedDirPath)) {
 				return;
 			}
 			if (changedUris != null && !changedUris.contains(uri)) {
@@ -193,6 +276,30 @@ public class CompilationUnitFactory implements ICompilationUnitFactory {
 		});
 	}
 
+	private boolean isWorkspaceIndexed(Path workspaceRoot) {
+		return workspaceURIs != null && workspaceRoot.normalize().equals(indexedRoot);
+	}
+
+	private Set<URI> walkSourceFiles(Path dirPath) {
+		Set<URI> result = new LinkedHashSet<>();
+		if (!Files.exists(dirPath)) {
+			return result;
+		}
+		try (Stream<Path> paths = Files.walk(dirPath)) {
+			paths.forEach(filePath -> {
+				if (!filePath.toString().endsWith(FILE_EXTENSION_GROOVY)) {
+					return;
+				}
+				if (Files.isRegularFile(filePath)) {
+					result.add(filePath.toUri());
+				}
+			});
+		} catch (IOException e) {
+			System.err.println("Failed to walk directory for source files: " + dirPath);
+		}
+		return result;
+	}
+
 	protected void addOpenFileToCompilationUnit(URI uri, String contents, GroovyLSCompilationUnit compilationUnit) {
 		Path filePath = Paths.get(uri);
 		SourceUnit sourceUnit = new SourceUnit(filePath.toString(),
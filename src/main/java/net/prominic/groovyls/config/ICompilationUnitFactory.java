@@ -19,8 +19,10 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.config;
 
+import java.net.URI;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Set;
 
 import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
 import net.prominic.groovyls.util.FileContentsTracker;
@@ -40,4 +42,18 @@ public interface ICompilationUnitFactory {
 	 * Returns a compilation unit.
 	 */
 	public GroovyLSCompilationUnit create(Path workspaceRoot, FileContentsTracker fileContentsTracker);
-}
\ No newline at end of file
+
+	/**
+	 * Returns a new compilation unit that contains a single file only. It is
+	 * not reused, and it does not affect the unit returned by create().
+	 */
+	public GroovyLSCompilationUnit createForSingleFile(URI uri, String contents);
+
+	/**
+	 * Updates the index of the workspace's source files after files or
+	 * directories have been created, changed, or deleted. Returns the source
+	 * files that were affected, including the files inside of any created or
+	 * deleted directories.
+	 */
+	public Set<URI> updateWorkspaceURIs(Path workspaceRoot, Set<URI> changedURIs);
+}
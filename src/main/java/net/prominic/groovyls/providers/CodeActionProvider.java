@@ -38,6 +38,7 @@ import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextEdit;
 import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import groovy.lang.groovydoc.Groovydoc;
@@ -56,7 +57,8 @@ public class CodeActionProvider {
 		this.fileContentsTracker = fileContentsTracker;
 	}
 
-	public CompletableFuture<List<Either<Command, CodeAction>>> provideCodeActions(CodeActionParams params) {
+	public CompletableFuture<List<Either<Command, CodeAction>>> provideCodeActions(CodeActionParams params,
+			CancelChecker cancelChecker) {
 		if (ast == null) {
 			return CompletableFuture.completedFuture(new ArrayList<>());
 		}
@@ -69,6 +71,7 @@ public class CodeActionProvider {
 		if (offsetNode == null) {
 			return CompletableFuture.completedFuture(actions);
 		}
+		cancelChecker.checkCanceled();
 
 		ASTNode definitionNode = GroovyASTUtils.getDefinition(offsetNode, false, ast);
 		
@@ -24,9 +24,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.codehaus.groovy.ast.ASTNode;
@@ -38,6 +42,7 @@ import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.ast.PropertyNode;
 import org.codehaus.groovy.ast.VariableScope;
+import org.codehaus.groovy.ast.expr.ClassExpression;
 import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
 import org.codehaus.groovy.ast.expr.Expression;
 import org.codehaus.groovy.ast.expr.MethodCallExpression;
@@ -55,29 +60,68 @@ import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
-import io.github.classgraph.ClassInfo;
-import io.github.classgraph.PackageInfo;
-import io.github.classgraph.ScanResult;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+import net.prominic.groovyls.classpath.ClasspathClass;
+import net.prominic.groovyls.classpath.ClasspathIndex;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
+import net.prominic.groovyls.compiler.ast.ClassMemberTable;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
 import net.prominic.groovyls.compiler.util.GroovydocUtils;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class CompletionProvider {
+	private static final AtomicInteger nextCompletionId = new AtomicInteger();
+
+	private static class ItemDetails {
+		// the groovydoc is converted to markdown only when it's resolved
+		public AnnotatedNode node;
+		public String detail;
+		public String importClassName;
+		public Range addImportRange;
+	}
+
+	private final int completionId = nextCompletionId.incrementAndGet();
 	private ASTNodeVisitor ast;
-	private ScanResult classGraphScanResult;
+	private ClasspathIndex classpathIndex;
+	private boolean isClasspathPending;
+	private boolean resolveAdditionalTextEdits;
 	private int maxItemCount = 1000;
 	private boolean isIncomplete = false;
-
-	public CompletionProvider(ASTNodeVisitor ast, ScanResult classGraphScanResult) {
+	// only the results that include types depend on the classpath
+	private boolean usesClasspath = false;
+	private CancelChecker cancelChecker;
+	// what's needed to narrow the results to a longer prefix later
+	private String narrowablePrefix;
+	private List<CompletionItem> completionItems;
+	private Map<CompletionItem, String> classNamesByTypeItem = new IdentityHashMap<>();
+	private boolean hasClasspathTypes;
+	private String typesEnclosingPackageName;
+	private List<String> typesImportNames;
+	private Range typesAddImportRange;
+	// the items only contain an index into this list, until resolved
+	private List<ItemDetails> itemDetails = new ArrayList<>();
+
+	/**
+	 * If the classpath is still being scanned, the results are always marked
+	 * incomplete, so that the client asks again. The edits that add imports
+	 * are included in the items unless the client can resolve them later.
+	 */
+	public CompletionProvider(ASTNodeVisitor ast, ClasspathIndex classpathIndex, boolean isClasspathPending,
+			boolean resolveAdditionalTextEdits) {
 		this.ast = ast;
-		this.classGraphScanResult = classGraphScanResult;
+		this.classpathIndex = classpathIndex;
+		this.isClasspathPending = isClasspathPending;
+		this.resolveAdditionalTextEdits = resolveAdditionalTextEdits;
 	}
 
 	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> provideCompletion(
-			TextDocumentIdentifier textDocument, Position position, CompletionContext context) {
+			TextDocumentIdentifier textDocument, Position position, CompletionContext context,
+			CancelChecker cancelChecker) {
 		if (ast == null) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
@@ -89,8 +133,13 @@ public class CompletionProvider {
 			return CompletableFuture.completedFuture(Either.forLeft(Collections.emptyList()));
 		}
 		ASTNode parentNode = ast.getParent(offsetNode);
+		cancelChecker.checkCanceled();
 
+		this.cancelChecker = cancelChecker;
 		isIncomplete = false;
+		narrowablePrefix = null;
+		hasClasspathTypes = false;
+		classNamesByTypeItem.clear();
 		List<CompletionItem> items = new ArrayList<>();
 
 		if (offsetNode instanceof PropertyExpression) {
@@ -110,17 +159,114 @@ public class CompletionProvider {
 		} else if (offsetNode instanceof ClassNode) {
 			populateItemsFromClassNode((ClassNode) offsetNode, position, items);
 		} else if (offsetNode instanceof MethodNode) {
+			narrowablePrefix = "";
 			populateItemsFromScope(offsetNode, "", items);
 		} else if (offsetNode instanceof Statement) {
+			narrowablePrefix = "";
 			populateItemsFromScope(offsetNode, "", items);
 		}
+		if (isIncomplete && !hasClasspathTypes) {
+			// a longer prefix would need to check the local classes again
+			narrowablePrefix = null;
+		}
+		completionItems = items;
 
-		if (isIncomplete) {
+		if (isIncomplete || (isClasspathPending && usesClasspath)) {
+			return CompletableFuture.completedFuture(Either.forRight(new CompletionList(true, items)));
+		}
+		return CompletableFuture.completedFuture(Either.forLeft(items));
+	}
+
+	/**
+	 * Returns the prefix that every item from the last completion starts with,
+	 * or null if the items can't be narrowed to a longer prefix.
+	 */
+	public String getNarrowablePrefix() {
+		return narrowablePrefix;
+	}
+
+	/**
+	 * Returns true if provideNarrowedCompletion() may be called with a
+	 * prefix, instead of completing again from scratch.
+	 */
+	public boolean canNarrow(String prefix) {
+		// an abbreviation like HM matches more than the names that start
+		// with it
+		return narrowablePrefix != null && prefix.startsWith(narrowablePrefix)
+				&& !ClasspathIndex.isInitials(prefix);
+	}
+
+	/**
+	 * Filters the items from the last completion by a prefix that extends
+	 * getNarrowablePrefix(), without resolving anything again. If the last
+	 * completion stopped at the maximum number of items, the classpath is
+	 * searched again for the longer prefix only.
+	 */
+	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> provideNarrowedCompletion(String prefix,
+			CancelChecker cancelChecker) {
+		List<CompletionItem> items = new ArrayList<>();
+		Set<String> existingNames = new HashSet<>();
+		for (CompletionItem item : completionItems) {
+			if (item.getLabel().startsWith(prefix)) {
+				items.add(item);
+				existingNames.add(classNamesByTypeItem.getOrDefault(item, item.getLabel()));
+			}
+		}
+		boolean isNarrowedIncomplete = false;
+		if (isIncomplete && hasClasspathTypes) {
+			// everything up to the last item was already checked
+			isNarrowedIncomplete = true;
+			if (classpathIndex != null) {
+				boolean[] isTruncated = new boolean[1];
+				classpathIndex.forEachClassBySimpleName(prefix, classpathClass -> {
+					cancelChecker.checkCanceled();
+					if (existingNames.size() >= maxItemCount) {
+						isTruncated[0] = true;
+						return false;
+					}
+					if (existingNames.add(classpathClass.getName())) {
+						items.add(createClasspathTypeItem(classpathClass, typesEnclosingPackageName,
+								typesImportNames, typesAddImportRange));
+					}
+					return true;
+				});
+				isNarrowedIncomplete = isTruncated[0];
+			}
+		}
+		if (isNarrowedIncomplete || (isClasspathPending && usesClasspath)) {
 			return CompletableFuture.completedFuture(Either.forRight(new CompletionList(true, items)));
 		}
 		return CompletableFuture.completedFuture(Either.forLeft(items));
 	}
 
+	/**
+	 * Adds the detail, documentation, and additional text edits to an item
+	 * that was returned by this provider. Items from other providers are
+	 * returned unchanged.
+	 */
+	public CompletableFuture<CompletionItem> resolveCompletionItem(CompletionItem item) {
+		ItemDetails details = getItemDetails(item.getData());
+		if (details == null) {
+			return CompletableFuture.completedFuture(item);
+		}
+		if (details.detail != null) {
+			item.setDetail(details.detail);
+		}
+		if (details.node != null) {
+			String markdownDocs = GroovydocUtils.groovydocToMarkdownDescription(details.node.getGroovydoc());
+			if (markdownDocs != null) {
+				item.setDocumentation(new MarkupContent(MarkupKind.MARKDOWN, markdownDocs));
+			}
+		}
+		if (details.importClassName != null) {
+			List<TextEdit> additionalTextEdits = new ArrayList<>();
+			TextEdit addImportEdit = createAddImportTextEdit(details.importClassName, details.addImportRange);
+			additionalTextEdits.add(addImportEdit);
+			item.setAdditionalTextEdits(additionalTextEdits);
+		}
+		return CompletableFuture.completedFuture(item);
+	}
+
 	private void populateItemsFromPropertyExpression(PropertyExpression propExpr, Position position,
 			List<CompletionItem> items) {
 		Range propertyRange = GroovyLanguageServerUtils.astNodeToRange(propExpr.getProperty());
@@ -128,6 +274,7 @@ public class CompletionProvider {
 			return;
 		}
 		String memberName = getMemberName(propExpr.getPropertyAsString(), propertyRange, position);
+		narrowablePrefix = memberName;
 		populateItemsFromExpression(propExpr.getObjectExpression(), memberName, items);
 	}
 
@@ -138,6 +285,7 @@ public class CompletionProvider {
 			return;
 		}
 		String memberName = getMemberName(methodCallExpr.getMethodAsString(), methodRange, position);
+		narrowablePrefix = memberName;
 		populateItemsFromExpression(methodCallExpr.getObjectExpression(), memberName, items);
 	}
 
@@ -159,17 +307,39 @@ public class CompletionProvider {
 				.map(otherImportNode -> otherImportNode.getClassName()).collect(Collectors.toList())
 				: Collections.emptyList();
 
+		// only the direct subpackages and classes of the package before the
+		// last dot are included
+		int lastDot = importText.lastIndexOf('.');
+		String parentPackageName = lastDot != -1 ? importText.substring(0, lastDot) : "";
+		String segmentPrefix = importText.substring(lastDot + 1);
+		Set<String> existingPackageNames = new HashSet<>();
+
+		for (ClassNode classNode : ast.getClassNodes()) {
+			String packageName = classNode.getPackageName();
+			if (packageName == null || packageName.length() == 0) {
+				continue;
+			}
+			String subpackageName = getSubpackageName(packageName, parentPackageName);
+			if (subpackageName != null && subpackageName.startsWith(importText)
+					&& existingPackageNames.add(subpackageName)) {
+				items.add(createPackageItem(subpackageName, importRange));
+			}
+		}
+
 		List<CompletionItem> localClassItems = ast.getClassNodes().stream().filter(classNode -> {
 			String packageName = classNode.getPackageName();
 			if (packageName == null || packageName.length() == 0 || packageName.equals(enclosingPackageName)) {
 				return false;
 			}
-			String className = classNode.getName();
 			String classNameWithoutPackage = classNode.getNameWithoutPackage();
-			if (!className.startsWith(importText) && !classNameWithoutPackage.startsWith(importText)) {
+			if (lastDot != -1) {
+				if (!packageName.equals(parentPackageName) || !classNameWithoutPackage.startsWith(segmentPrefix)) {
+					return false;
+				}
+			} else if (!classNameWithoutPackage.startsWith(importText)) {
 				return false;
 			}
-			if (importNames.contains(className)) {
+			if (importNames.contains(classNode.getName())) {
 				return false;
 			}
 			return true;
@@ -181,60 +351,74 @@ public class CompletionProvider {
 			if (classNode.getNameWithoutPackage().startsWith(importText)) {
 				item.setSortText(classNode.getNameWithoutPackage());
 			}
-			String markdownDocs = GroovydocUtils.groovydocToMarkdownDescription(classNode.getGroovydoc());
-			if (markdownDocs != null) {
-				item.setDocumentation(new MarkupContent(MarkupKind.MARKDOWN, markdownDocs));
-			}
+			setItemDetails(item, classNode, null, null, null);
 			return item;
 		}).collect(Collectors.toList());
 		items.addAll(localClassItems);
 
-		if (classGraphScanResult == null) {
+		usesClasspath = true;
+		if (classpathIndex == null) {
 			return;
 		}
-		List<ClassInfo> classes = classGraphScanResult.getAllClasses();
-		List<PackageInfo> packages = classGraphScanResult.getPackageInfo();
 
-		List<CompletionItem> packageItems = packages.stream().filter(packageInfo -> {
-			String packageName = packageInfo.getName();
-			if (packageName.startsWith(importText)) {
-				return true;
+		classpathIndex.forEachSubpackage(parentPackageName, segmentPrefix, packageName -> {
+			cancelChecker.checkCanceled();
+			if (existingPackageNames.add(packageName)) {
+				items.add(createPackageItem(packageName, importRange));
 			}
-			return false;
-		}).map(packageInfo -> {
-			CompletionItem item = new CompletionItem();
-			item.setLabel(packageInfo.getName());
-			item.setTextEdit(Either.forLeft(new TextEdit(importRange, packageInfo.getName())));
-			item.setKind(CompletionItemKind.Module);
-			return item;
-		}).collect(Collectors.toList());
-		items.addAll(packageItems);
+			return true;
+		});
 
-		List<CompletionItem> classItems = classes.stream().filter(classInfo -> {
-			String packageName = classInfo.getPackageName();
+		Predicate<ClasspathClass> addClassItem = classpathClass -> {
+			cancelChecker.checkCanceled();
+			String packageName = classpathClass.getPackageName();
 			if (packageName == null || packageName.length() == 0 || packageName.equals(enclosingPackageName)) {
-				return false;
-			}
-			String className = classInfo.getName();
-			String classNameWithoutPackage = classInfo.getSimpleName();
-			if (!className.startsWith(importText) && !classNameWithoutPackage.startsWith(importText)) {
-				return false;
+				return true;
 			}
+			String className = classpathClass.getName();
 			if (importNames.contains(className)) {
-				return false;
+				return true;
 			}
-			return true;
-		}).map(classInfo -> {
 			CompletionItem item = new CompletionItem();
-			item.setLabel(classInfo.getName());
-			item.setTextEdit(Either.forLeft(new TextEdit(importRange, classInfo.getName())));
-			item.setKind(classInfoToCompletionItemKind(classInfo));
-			if (classInfo.getSimpleName().startsWith(importText)) {
-				item.setSortText(classInfo.getSimpleName());
+			item.setLabel(className);
+			item.setTextEdit(Either.forLeft(new TextEdit(importRange, className)));
+			item.setKind(classpathClassToCompletionItemKind(classpathClass));
+			if (classpathClass.getSimpleName().startsWith(importText)) {
+				item.setSortText(classpathClass.getSimpleName());
 			}
-			return item;
-		}).collect(Collectors.toList());
-		items.addAll(classItems);
+			items.add(item);
+			return true;
+		};
+		if (lastDot != -1) {
+			classpathIndex.forEachClassInPackage(parentPackageName, segmentPrefix, addClassItem);
+		} else {
+			// without a package, the class may be anywhere
+			classpathIndex.forEachClassBySimpleName(importText, addClassItem);
+		}
+	}
+
+	/**
+	 * Returns the direct subpackage of the parent that contains the package,
+	 * or null if the package isn't inside the parent.
+	 */
+	private String getSubpackageName(String packageName, String parentPackageName) {
+		int start = 0;
+		if (parentPackageName.length() > 0) {
+			if (!packageName.startsWith(parentPackageName + ".")) {
+				return null;
+			}
+			start = parentPackageName.length() + 1;
+		}
+		int end = packageName.indexOf('.', start);
+		return end != -1 ? packageName.substring(0, end) : packageName;
+	}
+
+	private CompletionItem createPackageItem(String packageName, Range importRange) {
+		CompletionItem item = new CompletionItem();
+		item.setLabel(packageName);
+		item.setTextEdit(Either.forLeft(new TextEdit(importRange, packageName)));
+		item.setKind(CompletionItemKind.Module);
+		return item;
 	}
 
 	private void populateItemsFromClassNode(ClassNode classNode, Position position, List<CompletionItem> items) {
@@ -248,6 +432,7 @@ public class CompletionProvider {
 			return;
 		}
 		String className = getMemberName(classNode.getUnresolvedName(), classRange, position);
+		narrowablePrefix = className;
 		if (classNode.equals(parentClassNode.getUnresolvedSuperClass())) {
 			populateTypes(classNode, className, new HashSet<>(), true, false, false, items);
 		} else if (Arrays.asList(parentClassNode.getUnresolvedInterfaces()).contains(classNode)) {
@@ -262,6 +447,7 @@ public class CompletionProvider {
 			return;
 		}
 		String typeName = getMemberName(constructorCallExpr.getType().getNameWithoutPackage(), typeRange, position);
+		narrowablePrefix = typeName;
 		populateTypes(constructorCallExpr, typeName, new HashSet<>(), true, false, false, items);
 	}
 
@@ -272,6 +458,7 @@ public class CompletionProvider {
 			return;
 		}
 		String memberName = getMemberName(varExpr.getName(), varRange, position);
+		narrowablePrefix = memberName;
 		populateItemsFromScope(varExpr, memberName, items);
 	}
 
@@ -289,10 +476,7 @@ public class CompletionProvider {
 			CompletionItem item = new CompletionItem();
 			item.setLabel(property.getName());
 			item.setKind(GroovyLanguageServerUtils.astNodeToCompletionItemKind(property));
-			String markdownDocs = GroovydocUtils.groovydocToMarkdownDescription(property.getGroovydoc());
-			if (markdownDocs != null) {
-				item.setDocumentation(new MarkupContent(MarkupKind.MARKDOWN, markdownDocs));
-			}
+			setItemDetails(item, property, null, null, null);
 			return item;
 		}).collect(Collectors.toList());
 		items.addAll(propItems);
@@ -308,10 +492,7 @@ public class CompletionProvider {
 			CompletionItem item = new CompletionItem();
 			item.setLabel(field.getName());
 			item.setKind(GroovyLanguageServerUtils.astNodeToCompletionItemKind(field));
-			String markdownDocs = GroovydocUtils.groovydocToMarkdownDescription(field.getGroovydoc());
-			if (markdownDocs != null) {
-				item.setDocumentation(new MarkupContent(MarkupKind.MARKDOWN, markdownDocs));
-			}
+			setItemDetails(item, field, null, null, null);
 			return item;
 		}).collect(Collectors.toList());
 		items.addAll(fieldItems);
@@ -331,10 +512,7 @@ public class CompletionProvider {
 			CompletionItem item = new CompletionItem();
 			item.setLabel(method.getName());
 			item.setKind(GroovyLanguageServerUtils.astNodeToCompletionItemKind(method));
-			String markdownDocs = GroovydocUtils.groovydocToMarkdownDescription(method.getGroovydoc());
-			if (markdownDocs != null) {
-				item.setDocumentation(new MarkupContent(MarkupKind.MARKDOWN, markdownDocs));
-			}
+			setItemDetails(item, method, null, null, null);
 			return item;
 		}).collect(Collectors.toList());
 		items.addAll(methodItems);
@@ -343,11 +521,20 @@ public class CompletionProvider {
 	private void populateItemsFromExpression(Expression leftSide, String memberNamePrefix, List<CompletionItem> items) {
 		Set<String> existingNames = new HashSet<>();
 
-		List<PropertyNode> properties = GroovyASTUtils.getPropertiesForLeftSideOfPropertyExpression(leftSide, ast);
-		List<FieldNode> fields = GroovyASTUtils.getFieldsForLeftSideOfPropertyExpression(leftSide, ast);
+		ClassNode classNode = GroovyASTUtils.getTypeOfNode(leftSide, ast);
+		if (classNode == null) {
+			return;
+		}
+		// the member table is shared by every request for this version of
+		// the AST, so only the members with the prefix are visited
+		ClassMemberTable memberTable = ast.getMemberTable(classNode);
+		boolean statics = leftSide instanceof ClassExpression;
+
+		List<PropertyNode> properties = memberTable.getProperties(statics, memberNamePrefix);
+		List<FieldNode> fields = memberTable.getFields(statics, memberNamePrefix);
 		populateItemsFromPropertiesAndFields(properties, fields, memberNamePrefix, existingNames, items);
 
-		List<MethodNode> methods = GroovyASTUtils.getMethodsForLeftSideOfPropertyExpression(leftSide, ast);
+		List<MethodNode> methods = memberTable.getMethods(statics, memberNamePrefix);
 		populateItemsFromMethods(methods, memberNamePrefix, existingNames, items);
 	}
 
@@ -367,11 +554,7 @@ public class CompletionProvider {
 			item.setLabel(variable.getName());
 			item.setKind(GroovyLanguageServerUtils.astNodeToCompletionItemKind((ASTNode) variable));
 			if (variable instanceof AnnotatedNode) {
-				AnnotatedNode annotatedVar = (AnnotatedNode) variable;
-				String markdownDocs = GroovydocUtils.groovydocToMarkdownDescription(annotatedVar.getGroovydoc());
-				if (markdownDocs != null) {
-					item.setDocumentation(new MarkupContent(MarkupKind.MARKDOWN, markdownDocs));
-				}
+				setItemDetails(item, (AnnotatedNode) variable, null, null, null);
 			}
 			return item;
 		}).collect(Collectors.toList());
@@ -437,57 +620,117 @@ public class CompletionProvider {
 			CompletionItem item = new CompletionItem();
 			item.setLabel(classNode.getNameWithoutPackage());
 			item.setKind(GroovyLanguageServerUtils.astNodeToCompletionItemKind(classNode));
-			item.setDetail(packageName);
-			String markdownDocs = GroovydocUtils.groovydocToMarkdownDescription(classNode.getGroovydoc());
-			if (markdownDocs != null) {
-				item.setDocumentation(new MarkupContent(MarkupKind.MARKDOWN, markdownDocs));
-			}
+			classNamesByTypeItem.put(item, className);
+			String importClassName = null;
 			if (packageName != null && !packageName.equals(enclosingPackageName) && !importNames.contains(className)) {
-				List<TextEdit> additionalTextEdits = new ArrayList<>();
-				TextEdit addImportEdit = createAddImportTextEdit(className, addImportRange);
-				additionalTextEdits.add(addImportEdit);
-				item.setAdditionalTextEdits(additionalTextEdits);
+				importClassName = className;
 			}
+			setItemDetails(item, classNode, packageName, importClassName, addImportRange);
 			return item;
 		}).collect(Collectors.toList());
 		items.addAll(localClassItems);
 
-		if (classGraphScanResult == null) {
+		if (isIncomplete) {
+			return;
+		}
+		usesClasspath = true;
+		if (classpathIndex == null) {
 			return;
 		}
-		List<ClassInfo> classes = classGraphScanResult.getAllClasses();
+		hasClasspathTypes = true;
+		typesEnclosingPackageName = enclosingPackageName;
+		typesImportNames = importNames;
+		typesAddImportRange = addImportRange;
 
-		List<CompletionItem> classItems = classes.stream().filter(classInfo -> {
-			if (isIncomplete) {
-				return false;
-			}
+		Predicate<ClasspathClass> addClassItem = classpathClass -> {
+			cancelChecker.checkCanceled();
 			if (existingNames.size() >= maxItemCount) {
 				isIncomplete = true;
 				return false;
 			}
-			String className = classInfo.getName();
-			String classNameWithoutPackage = classInfo.getSimpleName();
-			if (classNameWithoutPackage.startsWith(namePrefix) && !existingNames.contains(className)) {
-				existingNames.add(className);
+			String className = classpathClass.getName();
+			if (existingNames.contains(className)) {
 				return true;
 			}
-			return false;
-		}).map(classInfo -> {
-			String className = classInfo.getName();
-			String packageName = classInfo.getPackageName();
-			CompletionItem item = new CompletionItem();
-			item.setLabel(classInfo.getSimpleName());
-			item.setDetail(packageName);
-			item.setKind(classInfoToCompletionItemKind(classInfo));
-			if (packageName != null && !packageName.equals(enclosingPackageName) && !importNames.contains(className)) {
-				List<TextEdit> additionalTextEdits = new ArrayList<>();
-				TextEdit addImportEdit = createAddImportTextEdit(className, addImportRange);
-				additionalTextEdits.add(addImportEdit);
-				item.setAdditionalTextEdits(additionalTextEdits);
+			existingNames.add(className);
+			CompletionItem item = createClasspathTypeItem(classpathClass, enclosingPackageName, importNames,
+					addImportRange);
+			classNamesByTypeItem.put(item, className);
+			items.add(item);
+			return true;
+		};
+		classpathIndex.forEachClassBySimpleName(namePrefix, addClassItem);
+		if (!isIncomplete && ClasspathIndex.isInitials(namePrefix)) {
+			// the client may match HM to HashMap, so include those too
+			classpathIndex.forEachClassByInitials(namePrefix, addClassItem);
+		}
+	}
+
+	private CompletionItem createClasspathTypeItem(ClasspathClass classpathClass, String enclosingPackageName,
+			List<String> importNames, Range addImportRange) {
+		String className = classpathClass.getName();
+		String packageName = classpathClass.getPackageName();
+		CompletionItem item = new CompletionItem();
+		item.setLabel(classpathClass.getSimpleName());
+		item.setKind(classpathClassToCompletionItemKind(classpathClass));
+		String importClassName = null;
+		if (packageName != null && !packageName.equals(enclosingPackageName) && !importNames.contains(className)) {
+			importClassName = className;
+		}
+		setItemDetails(item, null, packageName, importClassName, addImportRange);
+		return item;
+	}
+
+	private void setItemDetails(CompletionItem item, AnnotatedNode node, String detail, String importClassName,
+			Range addImportRange) {
+		if (importClassName != null && !resolveAdditionalTextEdits) {
+			List<TextEdit> additionalTextEdits = new ArrayList<>();
+			TextEdit addImportEdit = createAddImportTextEdit(importClassName, addImportRange);
+			additionalTextEdits.add(addImportEdit);
+			item.setAdditionalTextEdits(additionalTextEdits);
+			importClassName = null;
+		}
+		ItemDetails details = new ItemDetails();
+		details.node = node;
+		details.detail = detail;
+		details.importClassName = importClassName;
+		details.addImportRange = addImportRange;
+		int index = -1;
+		// narrowing may add more items while others are being resolved
+		synchronized (itemDetails) {
+			index = itemDetails.size();
+			itemDetails.add(details);
+		}
+		JsonArray data = new JsonArray();
+		data.add(completionId);
+		data.add(index);
+		item.setData(data);
+	}
+
+	private ItemDetails getItemDetails(Object data) {
+		// the client sends back the same JSON that it received
+		if (!(data instanceof JsonArray)) {
+			return null;
+		}
+		JsonArray array = (JsonArray) data;
+		if (array.size() != 2) {
+			return null;
+		}
+		for (JsonElement element : array) {
+			if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isNumber()) {
+				return null;
 			}
-			return item;
-		}).collect(Collectors.toList());
-		items.addAll(classItems);
+		}
+		if (array.get(0).getAsInt() != completionId) {
+			return null;
+		}
+		int index = array.get(1).getAsInt();
+		synchronized (itemDetails) {
+			if (index < 0 || index >= itemDetails.size()) {
+				return null;
+			}
+			return itemDetails.get(index);
+		}
 	}
 
 	private String getMemberName(String memberName, Range range, Position position) {
@@ -501,11 +744,11 @@ public class CompletionProvider {
 		return "";
 	}
 
-	private CompletionItemKind classInfoToCompletionItemKind(ClassInfo classInfo) {
-		if (classInfo.isInterface()) {
+	private CompletionItemKind classpathClassToCompletionItemKind(ClasspathClass classpathClass) {
+		if (classpathClass.isInterface()) {
 			return CompletionItemKind.Interface;
 		}
-		if (classInfo.isEnum()) {
+		if (classpathClass.isEnum()) {
 			return CompletionItemKind.Enum;
 		}
 		return CompletionItemKind.Class;
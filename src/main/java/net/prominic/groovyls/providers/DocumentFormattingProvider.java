@@ -34,6 +34,7 @@ import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.util.FileContentsTracker;
 
@@ -45,13 +46,14 @@ public class DocumentFormattingProvider {
     }
     
     public CompletableFuture<List<? extends TextEdit>> provideFormatting(
-            TextDocumentIdentifier textDocument, FormattingOptions options) {
+            TextDocumentIdentifier textDocument, FormattingOptions options, CancelChecker cancelChecker) {
         URI uri = URI.create(textDocument.getUri());
         String content = fileContentsTracker.getContents(uri);
         
         if (content == null || content.isEmpty()) {
             return CompletableFuture.completedFuture(Collections.emptyList());
         }
+        cancelChecker.checkCanceled();
         
         try {
             String formattedContent = formatGroovyCode(content, options);
@@ -82,13 +84,15 @@ public class DocumentFormattingProvider {
     }
     
     public CompletableFuture<List<? extends TextEdit>> provideRangeFormatting(
-            TextDocumentIdentifier textDocument, Range range, FormattingOptions options) {
+            TextDocumentIdentifier textDocument, Range range, FormattingOptions options,
+            CancelChecker cancelChecker) {
         URI uri = URI.create(textDocument.getUri());
         String content = fileContentsTracker.getContents(uri);
         
         if (content == null || content.isEmpty()) {
             return CompletableFuture.completedFuture(Collections.emptyList());
         }
+        cancelChecker.checkCanceled();
         
         try {
             // Extract the content within the range
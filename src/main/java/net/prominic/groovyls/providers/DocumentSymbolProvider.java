@@ -33,6 +33,7 @@ import org.codehaus.groovy.ast.PropertyNode;
 import org.eclipse.lsp4j.DocumentSymbol;
 import org.eclipse.lsp4j.SymbolInformation;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
@@ -47,7 +48,7 @@ public class DocumentSymbolProvider {
 	}
 
 	public CompletableFuture<List<Either<SymbolInformation, DocumentSymbol>>> provideDocumentSymbols(
-			TextDocumentIdentifier textDocument) {
+			TextDocumentIdentifier textDocument, CancelChecker cancelChecker) {
 		if (ast == null) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
@@ -56,6 +57,7 @@ public class DocumentSymbolProvider {
 		URI uri = URI.create(textDocument.getUri());
 		List<ASTNode> nodes = ast.getNodes(uri);
 		List<Either<SymbolInformation, DocumentSymbol>> symbols = nodes.stream().filter(node -> {
+			cancelChecker.checkCanceled();
 			return node instanceof ClassNode || node instanceof MethodNode || node instanceof FieldNode
 					|| node instanceof PropertyNode;
 		}).map(node -> {
@@ -32,6 +32,7 @@ import org.eclipse.lsp4j.MarkupContent;
 import org.eclipse.lsp4j.MarkupKind;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import groovy.lang.groovydoc.Groovydoc;
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
@@ -46,7 +47,8 @@ public class HoverProvider {
 		this.ast = ast;
 	}
 
-	public CompletableFuture<Hover> provideHover(TextDocumentIdentifier textDocument, Position position) {
+	public CompletableFuture<Hover> provideHover(TextDocumentIdentifier textDocument, Position position,
+			CancelChecker cancelChecker) {
 		if (ast == null) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
@@ -58,6 +60,7 @@ public class HoverProvider {
 		if (offsetNode == null) {
 			return CompletableFuture.completedFuture(null);
 		}
+		cancelChecker.checkCanceled();
 
 		ASTNode definitionNode = GroovyASTUtils.getDefinition(offsetNode, false, ast);
 		if (definitionNode == null) {
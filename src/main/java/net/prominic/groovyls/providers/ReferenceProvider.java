@@ -29,6 +29,7 @@ import org.codehaus.groovy.ast.ASTNode;
 import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
 import net.prominic.groovyls.compiler.util.GroovyASTUtils;
@@ -42,7 +43,7 @@ public class ReferenceProvider {
 	}
 
 	public CompletableFuture<List<? extends Location>> provideReferences(TextDocumentIdentifier textDocument,
-			Position position) {
+			Position position, CancelChecker cancelChecker) {
 		if (ast == null) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
@@ -54,7 +55,7 @@ public class ReferenceProvider {
 			return CompletableFuture.completedFuture(Collections.emptyList());
 		}
 
-		List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast);
+		List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast, cancelChecker);
 		List<Location> locations = references.stream().map(node -> {
 			URI uri = ast.getURI(node);
 			return GroovyLanguageServerUtils.astNodeToLocation(node, uri);
@@ -44,6 +44,7 @@ import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextEdit;
 import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
@@ -61,7 +62,7 @@ public class RenameProvider {
 		this.files = files;
 	}
 
-	public CompletableFuture<WorkspaceEdit> provideRename(RenameParams renameParams) {
+	public CompletableFuture<WorkspaceEdit> provideRename(RenameParams renameParams, CancelChecker cancelChecker) {
 		TextDocumentIdentifier textDocument = renameParams.getTextDocument();
 		Position position = renameParams.getPosition();
 		String newName = renameParams.getNewName();
@@ -81,8 +82,9 @@ public class RenameProvider {
 			return CompletableFuture.completedFuture(workspaceEdit);
 		}
 
-		List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast);
+		List<ASTNode> references = GroovyASTUtils.getReferences(offsetNode, ast, cancelChecker);
 		references.forEach(node -> {
+			cancelChecker.checkCanceled();
 			URI uri = ast.getURI(node);
 			if (uri == null) {
 				uri = documentURI;
@@ -39,6 +39,7 @@ import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.SignatureHelp;
 import org.eclipse.lsp4j.SignatureInformation;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import groovy.lang.groovydoc.Groovydoc;
@@ -56,7 +57,7 @@ public class SignatureHelpProvider {
 	}
 
 	public CompletableFuture<SignatureHelp> provideSignatureHelp(TextDocumentIdentifier textDocument,
-			Position position) {
+			Position position, CancelChecker cancelChecker) {
 		if (ast == null) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
@@ -67,6 +68,7 @@ public class SignatureHelpProvider {
 		if (offsetNode == null) {
 			return CompletableFuture.completedFuture(new SignatureHelp(Collections.emptyList(), -1, -1));
 		}
+		cancelChecker.checkCanceled();
 		int activeParamIndex = -1;
 		MethodCall methodCall = null;
 		ASTNode parentNode = ast.getParent(offsetNode);
@@ -90,6 +92,7 @@ public class SignatureHelpProvider {
 
 		List<SignatureInformation> sigInfos = new ArrayList<>();
 		for (MethodNode method : methods) {
+			cancelChecker.checkCanceled();
 			List<ParameterInformation> parameters = new ArrayList<>();
 			Parameter[] methodParams = method.getParameters();
 			for (int i = 0; i < methodParams.length; i++) {
@@ -29,6 +29,7 @@ import org.eclipse.lsp4j.Location;
 import org.eclipse.lsp4j.LocationLink;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
@@ -43,7 +44,7 @@ public class TypeDefinitionProvider {
 	}
 
 	public CompletableFuture<Either<List<? extends Location>, List<? extends LocationLink>>> provideTypeDefinition(
-			TextDocumentIdentifier textDocument, Position position) {
+			TextDocumentIdentifier textDocument, Position position, CancelChecker cancelChecker) {
 		if (ast == null) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
@@ -54,6 +55,7 @@ public class TypeDefinitionProvider {
 		if (offsetNode == null) {
 			return CompletableFuture.completedFuture(Either.forLeft(Collections.emptyList()));
 		}
+		cancelChecker.checkCanceled();
 
 		ASTNode definitionNode = GroovyASTUtils.getTypeDefinition(offsetNode, ast);
 		if (definitionNode == null || definitionNode.getLineNumber() == -1 || definitionNode.getColumnNumber() == -1) {
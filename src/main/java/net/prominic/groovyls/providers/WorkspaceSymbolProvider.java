@@ -19,11 +19,10 @@
 ////////////////////////////////////////////////////////////////////////////////
 package net.prominic.groovyls.providers;
 
-import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.ClassNode;
@@ -31,67 +30,55 @@ import org.codehaus.groovy.ast.FieldNode;
 import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.PropertyNode;
 import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
 
 import net.prominic.groovyls.compiler.ast.ASTNodeVisitor;
-import net.prominic.groovyls.compiler.util.GroovyASTUtils;
+import net.prominic.groovyls.compiler.ast.ASTSymbolIndex;
 import net.prominic.groovyls.util.GroovyLanguageServerUtils;
 
 public class WorkspaceSymbolProvider {
+	public static final int MAX_RESULTS = 100;
+
 	private ASTNodeVisitor ast;
 
 	public WorkspaceSymbolProvider(ASTNodeVisitor ast) {
 		this.ast = ast;
 	}
 
-	public CompletableFuture<List<? extends SymbolInformation>> provideWorkspaceSymbols(String query) {
+	public CompletableFuture<List<? extends SymbolInformation>> provideWorkspaceSymbols(String query,
+			CancelChecker cancelChecker) {
 		if (ast == null) {
 			// this shouldn't happen, but let's avoid an exception if something
 			// goes terribly wrong.
 			return CompletableFuture.completedFuture(Collections.emptyList());
 		}
-		String lowerCaseQuery = query.toLowerCase();
-		List<ASTNode> nodes = ast.getNodes();
-		List<SymbolInformation> symbols = nodes.stream().filter(node -> {
-			String name = null;
+		List<ASTSymbolIndex.Match> matches = ASTSymbolIndex.search(ast.getSymbolIndexes(), query, MAX_RESULTS,
+				cancelChecker);
+		List<SymbolInformation> symbols = new ArrayList<>();
+		for (ASTSymbolIndex.Match match : matches) {
+			ASTNode node = match.getNode();
+			SymbolInformation symbolInformation = null;
 			if (node instanceof ClassNode) {
 				ClassNode classNode = (ClassNode) node;
-				name = classNode.getName();
+				symbolInformation = GroovyLanguageServerUtils.astNodeToSymbolInformation(classNode, match.getURI(),
+						null);
 			} else if (node instanceof MethodNode) {
 				MethodNode methodNode = (MethodNode) node;
-				name = methodNode.getName();
-			} else if (node instanceof FieldNode) {
-				FieldNode fieldNode = (FieldNode) node;
-				name = fieldNode.getName();
+				symbolInformation = GroovyLanguageServerUtils.astNodeToSymbolInformation(methodNode, match.getURI(),
+						match.getContainerName());
 			} else if (node instanceof PropertyNode) {
 				PropertyNode propNode = (PropertyNode) node;
-				name = propNode.getName();
-			}
-			if (name == null) {
-				return false;
-			}
-			return name.toLowerCase().contains(lowerCaseQuery);
-		}).map(node -> {
-			URI uri = ast.getURI(node);
-			if (node instanceof ClassNode) {
-				ClassNode classNode = (ClassNode) node;
-				return GroovyLanguageServerUtils.astNodeToSymbolInformation(classNode, uri, null);
-			}
-			ClassNode classNode = (ClassNode) GroovyASTUtils.getEnclosingNodeOfType(node, ClassNode.class, ast);
-			if (node instanceof MethodNode) {
-				MethodNode methodNode = (MethodNode) node;
-				return GroovyLanguageServerUtils.astNodeToSymbolInformation(methodNode, uri, classNode.getName());
-			}
-			if (node instanceof PropertyNode) {
-				PropertyNode propNode = (PropertyNode) node;
-				return GroovyLanguageServerUtils.astNodeToSymbolInformation(propNode, uri, classNode.getName());
-			}
-			if (node instanceof FieldNode) {
+				symbolInformation = GroovyLanguageServerUtils.astNodeToSymbolInformation(propNode, match.getURI(),
+						match.getContainerName());
+			} else if (node instanceof FieldNode) {
 				FieldNode fieldNode = (FieldNode) node;
-				return GroovyLanguageServerUtils.astNodeToSymbolInformation(fieldNode, uri, classNode.getName());
+				symbolInformation = GroovyLanguageServerUtils.astNodeToSymbolInformation(fieldNode, match.getURI(),
+						match.getContainerName());
+			}
+			if (symbolInformation != null) {
+				symbols.add(symbolInformation);
 			}
-			// this should never happen
-			return null;
-		}).filter(symbolInformation -> symbolInformation != null).collect(Collectors.toList());
+		}
 		return CompletableFuture.completedFuture(symbols);
 	}
 }
\ No newline at end of file
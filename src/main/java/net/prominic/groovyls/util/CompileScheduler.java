@@ -0,0 +1,191 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+
+/**
+ * Coalesces the files that need to be compiled. A compile starts only after no
+ * new files have been scheduled for the duration of the quiet period, and at
+ * most one compile may run at a time.
+ */
+public class CompileScheduler {
+	public static final long DEFAULT_QUIET_PERIOD = 250;
+
+	private final BiConsumer<Set<URI>, CancelChecker> compileTask;
+	private final ReentrantLock compileLock = new ReentrantLock();
+	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> pendingFuture;
+	private Set<URI> pendingURIs = new LinkedHashSet<>();
+	private long quietPeriod = DEFAULT_QUIET_PERIOD;
+
+	/**
+	 * The compile task receives a null cancel checker when the compile was
+	 * not requested by a cancellable request.
+	 */
+	public CompileScheduler(BiConsumer<Set<URI>, CancelChecker> compileTask) {
+		this(compileTask, null);
+	}
+
+	/**
+	 * The quiet period is waited on the executor. If it's null, a thread is
+	 * created when the first file is scheduled.
+	 */
+	public CompileScheduler(BiConsumer<Set<URI>, CancelChecker> compileTask, ScheduledExecutorService executor) {
+		this.compileTask = compileTask;
+		this.executor = executor;
+	}
+
+	public synchronized long getQuietPeriod() {
+		return quietPeriod;
+	}
+
+	public synchronized void setQuietPeriod(long quietPeriod) {
+		this.quietPeriod = Math.max(0, quietPeriod);
+	}
+
+	public synchronized boolean hasPendingURIs() {
+		return !pendingURIs.isEmpty();
+	}
+
+	/**
+	 * Adds a file to the next compile, and restarts the quiet period.
+	 */
+	public synchronized void schedule(URI uri) {
+		// the most recently scheduled file is always last
+		pendingURIs.remove(uri);
+		pendingURIs.add(uri);
+		if (pendingFuture != null) {
+			pendingFuture.cancel(false);
+		}
+		if (executor == null) {
+			executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "groovyls-compile");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		pendingFuture = executor.schedule(this::compilePending, quietPeriod, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Compiles any pending files immediately on the calling thread. If a
+	 * compile is already in progress, waits for it to finish first.
+	 */
+	public void flush() {
+		flush(null);
+	}
+
+	/**
+	 * Like flush(), but the compile may be cancelled. If it is cancelled, the
+	 * compile task is responsible for scheduling any unfinished files again.
+	 */
+	public void flush(CancelChecker cancelChecker) {
+		compileLock.lock();
+		try {
+			compilePendingWithLock(cancelChecker);
+		} finally {
+			compileLock.unlock();
+		}
+	}
+
+	/**
+	 * Compiles any pending files, and then runs the task. No other compile
+	 * may start until the task is finished.
+	 */
+	public void runExclusive(Runnable task) {
+		compileLock.lock();
+		try {
+			compilePendingWithLock(null);
+			task.run();
+		} finally {
+			compileLock.unlock();
+		}
+	}
+
+	/**
+	 * Runs the task and returns its result. No compile may start until the
+	 * task is finished, but pending files are not compiled first.
+	 */
+	public <T> T callExclusive(Supplier<T> task) {
+		compileLock.lock();
+		try {
+			return task.get();
+		} finally {
+			compileLock.unlock();
+		}
+	}
+
+	/**
+	 * Runs the task only if no compile is in progress. Unlike runExclusive(),
+	 * pending files are not compiled first.
+	 */
+	public boolean tryRunExclusive(Runnable task) {
+		if (!compileLock.tryLock()) {
+			return false;
+		}
+		try {
+			task.run();
+			return true;
+		} finally {
+			compileLock.unlock();
+		}
+	}
+
+	public synchronized void shutdown() {
+		pendingURIs.clear();
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		pendingFuture = null;
+	}
+
+	private void compilePending() {
+		flush(null);
+	}
+
+	private void compilePendingWithLock(CancelChecker cancelChecker) {
+		Set<URI> uris = null;
+		synchronized (this) {
+			if (pendingURIs.isEmpty()) {
+				return;
+			}
+			uris = pendingURIs;
+			pendingURIs = new LinkedHashSet<>();
+			if (pendingFuture != null) {
+				pendingFuture.cancel(false);
+				pendingFuture = null;
+			}
+		}
+		compileTask.accept(uris, cancelChecker);
+	}
+}
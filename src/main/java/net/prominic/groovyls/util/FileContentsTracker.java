@@ -24,10 +24,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidCloseTextDocumentParams;
@@ -39,8 +38,10 @@ import net.prominic.lsp.utils.Positions;
 
 public class FileContentsTracker {
 
-	private Map<URI, String> openFiles = new HashMap<>();
-	private Set<URI> changedFiles = new HashSet<>();
+	// compiles may read while notifications are still being received
+	private Map<URI, String> openFiles = new ConcurrentHashMap<>();
+	private Map<URI, Integer> openVersions = new ConcurrentHashMap<>();
+	private volatile Set<URI> changedFiles = ConcurrentHashMap.newKeySet();
 
 	public Set<URI> getOpenURIs() {
 		return openFiles.keySet();
@@ -51,7 +52,7 @@ public class FileContentsTracker {
 	}
 
 	public void resetChangedFiles() {
-		changedFiles = new HashSet<>();
+		changedFiles = ConcurrentHashMap.newKeySet();
 	}
 
 	public void forceChanged(URI uri) {
@@ -62,9 +63,18 @@ public class FileContentsTracker {
 		return openFiles.containsKey(uri);
 	}
 
+	/**
+	 * Returns the version of an open document, as reported by the client, or
+	 * null if the document is not open.
+	 */
+	public Integer getVersion(URI uri) {
+		return openVersions.get(uri);
+	}
+
 	public void didOpen(DidOpenTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
 		openFiles.put(uri, params.getTextDocument().getText());
+		openVersions.put(uri, params.getTextDocument().getVersion());
 		changedFiles.add(uri);
 	}
 
@@ -84,17 +94,20 @@ public class FileContentsTracker {
 			builder.append(oldText.substring(offsetEnd));
 			openFiles.put(uri, builder.toString());
 		}
+		openVersions.put(uri, params.getTextDocument().getVersion());
 		changedFiles.add(uri);
 	}
 
 	public void didClose(DidCloseTextDocumentParams params) {
 		URI uri = URI.create(params.getTextDocument().getUri());
 		openFiles.remove(uri);
+		openVersions.remove(uri);
 		changedFiles.add(uri);
 	}
 
 	public String getContents(URI uri) {
-		if (!openFiles.containsKey(uri)) {
+		String contents = openFiles.get(uri);
+		if (contents == null) {
 			BufferedReader reader = null;
 			try {
 				reader = Files.newBufferedReader(Paths.get(uri));
@@ -115,7 +128,7 @@ public class FileContentsTracker {
 				}
 			}
 		}
-		return openFiles.get(uri);
+		return contents;
 	}
 
 	public void setContents(URI uri, String contents) {
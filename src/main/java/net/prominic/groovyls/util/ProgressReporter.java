@@ -0,0 +1,111 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.WorkDoneProgressBegin;
+import org.eclipse.lsp4j.WorkDoneProgressCreateParams;
+import org.eclipse.lsp4j.WorkDoneProgressEnd;
+import org.eclipse.lsp4j.WorkDoneProgressReport;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+
+/**
+ * Reports the progress of a long running task to the client. The task never
+ * waits for the client: the token is created asynchronously, and nothing is
+ * reported until the client responds, or at all if it never does.
+ */
+public class ProgressReporter {
+	private final LanguageClient client;
+	private final String token;
+	private final String title;
+	// the client may not be ready for requests yet, like before initialized
+	private final BooleanSupplier canBegin;
+	private boolean requested = false;
+	private boolean begun = false;
+	private boolean ended = false;
+	private int percentage = 0;
+
+	public ProgressReporter(LanguageClient client, String token, String title, BooleanSupplier canBegin) {
+		this.client = client;
+		this.token = token;
+		this.title = title;
+		this.canBegin = canBegin;
+	}
+
+	public synchronized void report(int percentage) {
+		this.percentage = percentage;
+		if (begun) {
+			if (!ended) {
+				WorkDoneProgressReport report = new WorkDoneProgressReport();
+				report.setPercentage(percentage);
+				client.notifyProgress(new ProgressParams(Either.forLeft(token), Either.forLeft(report)));
+			}
+			return;
+		}
+		update();
+	}
+
+	/**
+	 * Creates the token, if it hasn't been created yet, and if the client is
+	 * ready for it now.
+	 */
+	public synchronized void update() {
+		if (requested || ended || !canBegin.getAsBoolean()) {
+			return;
+		}
+		requested = true;
+		try {
+			client.createProgress(new WorkDoneProgressCreateParams(Either.forLeft(token)))
+					.whenComplete((result, error) -> {
+						if (error == null) {
+							begin();
+						}
+					});
+		} catch (UnsupportedOperationException e) {
+			// the client refused, so progress won't be reported
+		}
+	}
+
+	public synchronized void end() {
+		if (ended) {
+			return;
+		}
+		ended = true;
+		if (begun) {
+			client.notifyProgress(new ProgressParams(Either.forLeft(token), Either.forLeft(new WorkDoneProgressEnd())));
+		}
+	}
+
+	private synchronized void begin() {
+		if (ended) {
+			// the task finished before the client responded
+			return;
+		}
+		begun = true;
+		WorkDoneProgressBegin begin = new WorkDoneProgressBegin();
+		begin.setTitle(title);
+		begin.setCancellable(false);
+		begin.setPercentage(percentage);
+		client.notifyProgress(new ProgressParams(Either.forLeft(token), Either.forLeft(begin)));
+	}
+}
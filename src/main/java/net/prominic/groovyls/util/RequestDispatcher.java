@@ -0,0 +1,85 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs queued tasks on a fixed number of threads, in priority order. Tasks
+ * with the same priority run in the order that they were queued.
+ */
+public class RequestDispatcher {
+	public enum Priority {
+		/** Requests that the user is waiting on while typing. */
+		HIGH,
+		NORMAL,
+		/** Requests that may need to search every file in the workspace. */
+		LOW
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicLong sequence = new AtomicLong();
+
+	public RequestDispatcher(String threadName, int threadCount) {
+		executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+				new PriorityBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, threadName);
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	public void execute(Priority priority, Runnable task) {
+		executor.execute(new PrioritizedTask(priority, sequence.getAndIncrement(), task));
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+		private final Priority priority;
+		private final long sequence;
+		private final Runnable task;
+
+		PrioritizedTask(Priority priority, long sequence, Runnable task) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			task.run();
+		}
+
+		@Override
+		public int compareTo(PrioritizedTask other) {
+			int result = priority.compareTo(other.priority);
+			if (result != 0) {
+				return result;
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -22,6 +22,8 @@ package net.prominic.groovyls;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
@@ -30,14 +32,18 @@ import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionItemKind;
 import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.CompletionParams;
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.MessageActionItem;
 import org.eclipse.lsp4j.MessageParams;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
 import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.junit.jupiter.api.AfterEach;
@@ -45,11 +51,14 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import net.prominic.groovyls.classpath.ClasspathCache;
+import net.prominic.groovyls.classpath.ClasspathScanner;
 import net.prominic.groovyls.config.CompilationUnitFactory;
 
 class GroovyServicesCompletionTests {
 	private static final String LANGUAGE_GROOVY = "groovy";
 	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_CLASSPATH_CACHE = "./build/test_classpath_cache_services/";
 	private static final String PATH_SRC = "./src/main/groovy";
 
 	private GroovyServices services;
@@ -64,9 +73,22 @@ class GroovyServicesCompletionTests {
 			srcRoot.toFile().mkdirs();
 		}
 
-		services = new GroovyServices(new CompilationUnitFactory());
+		Path classpathCache = Paths.get(System.getProperty("user.dir")).resolve(PATH_CLASSPATH_CACHE);
+		services = new GroovyServices(new CompilationUnitFactory(),
+				new ClasspathScanner(new ClasspathCache(classpathCache)), Runnable::run);
 		services.setWorkspaceRoot(workspaceRoot);
-		services.connect(new LanguageClient() {
+		services.connect(createLanguageClient());
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+	}
+
+	private LanguageClient createLanguageClient() {
+		return new LanguageClient() {
 
 			@Override
 			public void telemetryEvent(Object object) {
@@ -92,14 +114,7 @@ class GroovyServicesCompletionTests {
 			public void logMessage(MessageParams message) {
 
 			}
-		});
-	}
-
-	@AfterEach
-	void tearDown() {
-		services = null;
-		workspaceRoot = null;
-		srcRoot = null;
+		};
 	}
 
 	@Test
@@ -128,6 +143,41 @@ class GroovyServicesCompletionTests {
 		Assertions.assertEquals(1, filteredItems.size());
 	}
 
+	@Test
+	void testMemberAccessOnLocalVariableFromOtherFileAfterDot() throws Exception {
+		Path otherFilePath = srcRoot.resolve("CompletionOther.groovy");
+		String otherUri = otherFilePath.toUri().toString();
+		StringBuilder otherContents = new StringBuilder();
+		otherContents.append("class CompletionOther {\n");
+		otherContents.append("  public void otherMethod() {}\n");
+		otherContents.append("}");
+		TextDocumentItem otherTextDocumentItem = new TextDocumentItem(otherUri, LANGUAGE_GROOVY, 1,
+				otherContents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(otherTextDocumentItem));
+
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    CompletionOther localVar\n");
+		contents.append("    localVar.\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(3, 13);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		List<CompletionItem> items = result.getLeft();
+		List<CompletionItem> filteredItems = items.stream().filter(item -> {
+			return item.getLabel().equals("otherMethod") && item.getKind().equals(CompletionItemKind.Method);
+		}).collect(Collectors.toList());
+		Assertions.assertEquals(1, filteredItems.size());
+	}
+
 	@Test
 	void testMemberAccessOnMemberVariableAfterDot() throws Exception {
 		Path filePath = srcRoot.resolve("Completion.groovy");
@@ -298,6 +348,114 @@ class GroovyServicesCompletionTests {
 		Assertions.assertEquals(CompletionItemKind.Method, item.getKind());
 	}
 
+	@Test
+	void testMemberAccessOnThisAfterTypingMoreCharacters() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    this.a\n");
+		contents.append("  }\n");
+		contents.append("  public abc() {}\n");
+		contents.append("  public abcdef() {}\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(2, 10);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		Assertions.assertEquals(2, result.getLeft().size());
+
+		// the new prefix extends the old one, so the last results are narrowed
+		VersionedTextDocumentIdentifier versionedTextDocument = new VersionedTextDocumentIdentifier(uri, 2);
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				new Range(new Position(2, 10), new Position(2, 10)), 0, "bcd");
+		services.didChange(
+				new DidChangeTextDocumentParams(versionedTextDocument, Collections.singletonList(changeEvent)));
+		position = new Position(2, 13);
+		result = services.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		List<CompletionItem> items = result.getLeft();
+		Assertions.assertEquals(1, items.size());
+		CompletionItem item = items.get(0);
+		Assertions.assertEquals("abcdef", item.getLabel());
+		Assertions.assertEquals(CompletionItemKind.Method, item.getKind());
+
+		// deleting characters is not narrowing, so everything is resolved again
+		versionedTextDocument = new VersionedTextDocumentIdentifier(uri, 3);
+		changeEvent = new TextDocumentContentChangeEvent(new Range(new Position(2, 11), new Position(2, 13)), 2, "");
+		services.didChange(
+				new DidChangeTextDocumentParams(versionedTextDocument, Collections.singletonList(changeEvent)));
+		position = new Position(2, 11);
+		result = services.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		Assertions.assertEquals(2, result.getLeft().size());
+	}
+
+	@Test
+	void testMemberAccessOnInheritedMembersWithPartialPropertyExpression() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class CompletionBase {\n");
+		contents.append("  public void memberMethod() {}\n");
+		contents.append("  public void otherMethod() {}\n");
+		contents.append("}\n");
+		contents.append("class Completion extends CompletionBase {\n");
+		contents.append("  public void memberMethod() {}\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    this.memb\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(7, 13);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		List<CompletionItem> items = result.getLeft();
+		// the override and the superclass method are the same item
+		Assertions.assertEquals(1, items.size());
+		Assertions.assertEquals("memberMethod", items.get(0).getLabel());
+		Assertions.assertEquals(CompletionItemKind.Method, items.get(0).getKind());
+	}
+
+	@Test
+	void testMemberAccessResolvesDocumentation() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    this.abc\n");
+		contents.append("  }\n");
+		contents.append("  /**\n");
+		contents.append("   * Hello.\n");
+		contents.append("   */\n");
+		contents.append("  public abcdef() {}\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(2, 12);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		List<CompletionItem> items = result.getLeft();
+		Assertions.assertEquals(1, items.size());
+		CompletionItem item = items.get(0);
+		Assertions.assertEquals("abcdef", item.getLabel());
+		Assertions.assertNull(item.getDocumentation());
+		item = services.resolveCompletionItem(item).get();
+		Assertions.assertNotNull(item.getDocumentation());
+		Assertions.assertTrue(item.getDocumentation().getRight().getValue().startsWith("Hello."));
+	}
+
 	@Test
 	void testMemberAccessOnLocalVariableWithExistingVariableExpressionOnNextLine() throws Exception {
 		Path filePath = srcRoot.resolve("Completion.groovy");
@@ -598,10 +756,12 @@ class GroovyServicesCompletionTests {
 		List<CompletionItem> items = result.getLeft();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
-			return item.getLabel().equals("Completion") && item.getDetail().equals("com.example")
-					&& item.getKind().equals(CompletionItemKind.Class);
+			return item.getLabel().equals("Completion") && item.getKind().equals(CompletionItemKind.Class);
 		}).collect(Collectors.toList());
 		Assertions.assertEquals(1, filteredItems.size());
+		// the detail isn't included until the item is resolved
+		CompletionItem item = services.resolveCompletionItem(filteredItems.get(0)).get();
+		Assertions.assertEquals("com.example", item.getDetail());
 	}
 
 	@Test
@@ -624,9 +784,82 @@ class GroovyServicesCompletionTests {
 		List<CompletionItem> items = result.getLeft();
 		Assertions.assertTrue(items.size() > 0);
 		List<CompletionItem> filteredItems = items.stream().filter(item -> {
-			return item.getLabel().equals("ArrayList") && item.getDetail().equals("java.util")
-					&& item.getKind().equals(CompletionItemKind.Class);
+			if (!item.getLabel().equals("ArrayList") || !item.getKind().equals(CompletionItemKind.Class)) {
+				return false;
+			}
+			try {
+				return services.resolveCompletionItem(item).get().getDetail().equals("java.util");
+			} catch (Exception e) {
+				return false;
+			}
 		}).collect(Collectors.toList());
 		Assertions.assertEquals(1, filteredItems.size());
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testSystemClassBeforeClasspathScanned() throws Exception {
+		// the scan doesn't run until the test allows it
+		List<Runnable> classpathScans = new ArrayList<>();
+		Path classpathCache = Paths.get(System.getProperty("user.dir")).resolve(PATH_CLASSPATH_CACHE);
+		services = new GroovyServices(new CompilationUnitFactory(),
+				new ClasspathScanner(new ClasspathCache(classpathCache)), classpathScans::add);
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(createLanguageClient());
+
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Completion {\n");
+		contents.append("  public Completion() {\n");
+		contents.append("    ArrayLis\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(2, 12);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isRight());
+		Assertions.assertTrue(result.getRight().isIncomplete());
+		Assertions.assertFalse(result.getRight().getItems().stream().anyMatch(item -> {
+			return item.getLabel().equals("ArrayList");
+		}));
+
+		Assertions.assertEquals(1, classpathScans.size());
+		classpathScans.get(0).run();
+		result = services.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		Assertions.assertTrue(result.getLeft().stream().anyMatch(item -> {
+			return item.getLabel().equals("ArrayList");
+		}));
+	}
+
+	@Test
+	void testImportPackageMembers() throws Exception {
+		Path filePath = srcRoot.resolve("Completion.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("import java.util.\n");
+		contents.append("class Completion {\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier textDocument = new TextDocumentIdentifier(uri);
+		Position position = new Position(0, 17);
+		Either<List<CompletionItem>, CompletionList> result = services
+				.completion(new CompletionParams(textDocument, position)).get();
+		Assertions.assertTrue(result.isLeft());
+		List<CompletionItem> items = result.getLeft();
+		Assertions.assertTrue(items.stream().anyMatch(item -> {
+			return item.getLabel().equals("java.util.ArrayList") && item.getKind().equals(CompletionItemKind.Class);
+		}));
+		Assertions.assertTrue(items.stream().anyMatch(item -> {
+			return item.getLabel().equals("java.util.concurrent") && item.getKind().equals(CompletionItemKind.Module);
+		}));
+		// only the direct members of the package are included
+		Assertions.assertFalse(items.stream().anyMatch(item -> {
+			return item.getLabel().startsWith("java.util.concurrent.");
+		}));
+	}
+}
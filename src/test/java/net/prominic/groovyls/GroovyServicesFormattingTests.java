@@ -39,10 +39,13 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import net.prominic.groovyls.classpath.ClasspathCache;
+import net.prominic.groovyls.classpath.ClasspathScanner;
 import net.prominic.groovyls.config.CompilationUnitFactory;
 
 public class GroovyServicesFormattingTests {
     private static final String LANGUAGE_GROOVY = "groovy";
+    private static final String PATH_CLASSPATH_CACHE = "./build/test_classpath_cache_services/";
     
     private GroovyServices services;
     private Path workspaceRoot;
@@ -50,7 +53,9 @@ public class GroovyServicesFormattingTests {
     @BeforeEach
     void setup() {
         workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve("src/test/java/net/prominic/groovyls");
-        services = new GroovyServices(new CompilationUnitFactory());
+        Path classpathCache = Paths.get(System.getProperty("user.dir")).resolve(PATH_CLASSPATH_CACHE);
+        services = new GroovyServices(new CompilationUnitFactory(),
+                new ClasspathScanner(new ClasspathCache(classpathCache)), null);
         services.connect(new LanguageClient() {
             @Override
             public void logMessage(org.eclipse.lsp4j.MessageParams params) {
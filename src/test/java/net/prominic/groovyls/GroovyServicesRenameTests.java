@@ -0,0 +1,163 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.RenameParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentEdit;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.WorkspaceEdit;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.classpath.ClasspathCache;
+import net.prominic.groovyls.classpath.ClasspathScanner;
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesRenameTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_CLASSPATH_CACHE = "./build/test_classpath_cache_services/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+
+		Path classpathCache = Paths.get(System.getProperty("user.dir")).resolve(PATH_CLASSPATH_CACHE);
+		services = new GroovyServices(new CompilationUnitFactory(),
+				new ClasspathScanner(new ClasspathCache(classpathCache)), null);
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+	}
+
+	@Test
+	void testMethodFromOtherFileAfterChange() throws Exception {
+		Path otherFilePath = srcRoot.resolve("RenameOther.groovy");
+		String otherUri = otherFilePath.toUri().toString();
+		StringBuilder otherContents = new StringBuilder();
+		otherContents.append("class RenameOther {\n");
+		otherContents.append("  public void otherMethod() {}\n");
+		otherContents.append("}");
+		TextDocumentItem otherTextDocumentItem = new TextDocumentItem(otherUri, LANGUAGE_GROOVY, 1,
+				otherContents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(otherTextDocumentItem));
+
+		Path filePath = srcRoot.resolve("Rename.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class Rename {\n");
+		contents.append("  public Rename() {\n");
+		contents.append("    new RenameOther().otherMethod()\n");
+		contents.append("  }\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+		TextDocumentIdentifier otherTextDocument = new TextDocumentIdentifier(otherUri);
+		services.rename(new RenameParams(otherTextDocument, new Position(1, 16), "renamedMethod")).get();
+
+		// the other file is compiled again, and its method is a new node
+		StringBuilder changedOtherContents = new StringBuilder();
+		changedOtherContents.append("class RenameOther {\n");
+		changedOtherContents.append("\n");
+		changedOtherContents.append("  public void otherMethod() {}\n");
+		changedOtherContents.append("}");
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent(
+				changedOtherContents.toString());
+		services.didChange(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(otherUri, 2),
+				Collections.singletonList(changeEvent)));
+		WorkspaceEdit result = services
+				.rename(new RenameParams(otherTextDocument, new Position(2, 16), "renamedMethod")).get();
+
+		List<TextDocumentEdit> textDocumentEdits = result.getDocumentChanges().stream().filter(Either::isLeft)
+				.map(Either::getLeft).collect(Collectors.toList());
+		Assertions.assertEquals(2, textDocumentEdits.size());
+		TextDocumentEdit edit = textDocumentEdits.stream()
+				.filter(textDocumentEdit -> textDocumentEdit.getTextDocument().getUri().equals(uri)).findFirst()
+				.orElse(null);
+		Assertions.assertNotNull(edit);
+		Assertions.assertEquals(1, edit.getEdits().size());
+		Assertions.assertEquals("renamedMethod", edit.getEdits().get(0).getNewText());
+		Assertions.assertEquals(2, edit.getEdits().get(0).getRange().getStart().getLine());
+		Assertions.assertEquals(22, edit.getEdits().get(0).getRange().getStart().getCharacter());
+	}
+}
@@ -41,11 +41,14 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import net.prominic.groovyls.classpath.ClasspathCache;
+import net.prominic.groovyls.classpath.ClasspathScanner;
 import net.prominic.groovyls.config.CompilationUnitFactory;
 
 class GroovyServicesTypeDefinitionTests {
 	private static final String LANGUAGE_GROOVY = "groovy";
 	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_CLASSPATH_CACHE = "./build/test_classpath_cache_services/";
 	private static final String PATH_SRC = "./src/main/groovy";
 
 	private GroovyServices services;
@@ -60,7 +63,9 @@ class GroovyServicesTypeDefinitionTests {
 			srcRoot.toFile().mkdirs();
 		}
 
-		services = new GroovyServices(new CompilationUnitFactory());
+		Path classpathCache = Paths.get(System.getProperty("user.dir")).resolve(PATH_CLASSPATH_CACHE);
+		services = new GroovyServices(new CompilationUnitFactory(),
+				new ClasspathScanner(new ClasspathCache(classpathCache)), null);
 		services.setWorkspaceRoot(workspaceRoot);
 		services.connect(new LanguageClient() {
 
@@ -0,0 +1,158 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.classpath.ClasspathCache;
+import net.prominic.groovyls.classpath.ClasspathScanner;
+import net.prominic.groovyls.config.CompilationUnitFactory;
+
+class GroovyServicesWorkspaceSymbolTests {
+	private static final String LANGUAGE_GROOVY = "groovy";
+	private static final String PATH_WORKSPACE = "./build/test_workspace/";
+	private static final String PATH_CLASSPATH_CACHE = "./build/test_classpath_cache_services/";
+	private static final String PATH_SRC = "./src/main/groovy";
+
+	private GroovyServices services;
+	private Path workspaceRoot;
+	private Path srcRoot;
+
+	@BeforeEach
+	void setup() {
+		workspaceRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_WORKSPACE);
+		srcRoot = workspaceRoot.resolve(PATH_SRC);
+		if (!Files.exists(srcRoot)) {
+			srcRoot.toFile().mkdirs();
+		}
+
+		Path classpathCache = Paths.get(System.getProperty("user.dir")).resolve(PATH_CLASSPATH_CACHE);
+		services = new GroovyServices(new CompilationUnitFactory(),
+				new ClasspathScanner(new ClasspathCache(classpathCache)), null);
+		services.setWorkspaceRoot(workspaceRoot);
+		services.connect(new LanguageClient() {
+
+			@Override
+			public void telemetryEvent(Object object) {
+
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		services = null;
+		workspaceRoot = null;
+		srcRoot = null;
+	}
+
+	@Test
+	void testWorkspaceSymbolsContainingQuery() throws Exception {
+		openSymbolsFile();
+
+		List<? extends SymbolInformation> symbols = services.symbol(new WorkspaceSymbolParams("node")).get();
+		List<String> names = symbols.stream().map(SymbolInformation::getName).collect(Collectors.toList());
+		Assertions.assertTrue(names.contains("getNodeByName"));
+		Assertions.assertTrue(names.contains("removeNode"));
+		Assertions.assertTrue(names.contains("nodeCount"));
+		Assertions.assertFalse(names.contains("WorkspaceSymbols"));
+		SymbolInformation symbol = symbols.stream().filter(s -> s.getName().equals("removeNode")).findFirst().get();
+		Assertions.assertEquals("WorkspaceSymbols", symbol.getContainerName());
+	}
+
+	@Test
+	void testWorkspaceSymbolsExactMatchFirst() throws Exception {
+		openSymbolsFile();
+
+		List<? extends SymbolInformation> symbols = services.symbol(new WorkspaceSymbolParams("removenode")).get();
+		Assertions.assertEquals("removeNode", symbols.get(0).getName());
+	}
+
+	@Test
+	void testWorkspaceSymbolsCamelCase() throws Exception {
+		openSymbolsFile();
+
+		List<? extends SymbolInformation> symbols = services.symbol(new WorkspaceSymbolParams("gNBN")).get();
+		Assertions.assertEquals(1, symbols.size());
+		Assertions.assertEquals("getNodeByName", symbols.get(0).getName());
+	}
+
+	@Test
+	void testWorkspaceSymbolsMisspelled() throws Exception {
+		openSymbolsFile();
+
+		List<? extends SymbolInformation> symbols = services.symbol(new WorkspaceSymbolParams("getNodeByNmae")).get();
+		Assertions.assertTrue(symbols.size() > 0);
+		Assertions.assertEquals("getNodeByName", symbols.get(0).getName());
+	}
+
+	private void openSymbolsFile() {
+		Path filePath = srcRoot.resolve("WorkspaceSymbols.groovy");
+		String uri = filePath.toUri().toString();
+		StringBuilder contents = new StringBuilder();
+		contents.append("class WorkspaceSymbols {\n");
+		contents.append("  int nodeCount\n");
+		contents.append("  String getNodeByName(String name) {}\n");
+		contents.append("  void removeNode() {}\n");
+		contents.append("  void clear() {}\n");
+		contents.append("}");
+		TextDocumentItem textDocumentItem = new TextDocumentItem(uri, LANGUAGE_GROOVY, 1, contents.toString());
+		services.didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+	}
+}
@@ -0,0 +1,171 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ClasspathCacheTests {
+	private static final String PATH_TEST_ROOT = "./build/test_classpath_cache/";
+
+	private Path testRoot;
+	private File jarFile;
+	private ClasspathCache cache;
+
+	@BeforeEach
+	void setup() throws IOException {
+		testRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_TEST_ROOT);
+		deleteTestRoot();
+		Files.createDirectories(testRoot);
+		jarFile = testRoot.resolve("library.jar").toFile();
+		Files.write(jarFile.toPath(), "not really a jar".getBytes(StandardCharsets.UTF_8));
+		cache = new ClasspathCache(testRoot.resolve("cache"));
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		deleteTestRoot();
+		testRoot = null;
+		jarFile = null;
+		cache = null;
+	}
+
+	@Test
+	void testReadWithoutWrite() {
+		Assertions.assertNull(cache.read(jarFile));
+	}
+
+	@Test
+	void testWriteAndRead() {
+		ClasspathContents contents = new ClasspathContents(Arrays.asList(
+				new ClasspathClass("com.example.Library", "Library", "com.example", false, false),
+				new ClasspathClass("com.example.Library$Kind", "Kind", "com.example", false, true),
+				new ClasspathClass("Unpackaged", "Unpackaged", "", true, false)), Arrays.asList("com.example"));
+		cache.write(jarFile, contents);
+
+		ClasspathContents cachedContents = cache.read(jarFile);
+		Assertions.assertNotNull(cachedContents);
+		Assertions.assertEquals(Arrays.asList("com.example"), cachedContents.getPackageNames());
+		Assertions.assertEquals(3, cachedContents.getClasses().size());
+		ClasspathClass kind = cachedContents.getClasses().get(1);
+		Assertions.assertEquals("com.example.Library$Kind", kind.getName());
+		Assertions.assertEquals("Kind", kind.getSimpleName());
+		Assertions.assertEquals("com.example", kind.getPackageName());
+		Assertions.assertFalse(kind.isInterface());
+		Assertions.assertTrue(kind.isEnum());
+		ClasspathClass unpackaged = cachedContents.getClasses().get(2);
+		Assertions.assertEquals("", unpackaged.getPackageName());
+		Assertions.assertTrue(unpackaged.isInterface());
+	}
+
+	@Test
+	void testReadAfterJarChanged() throws IOException {
+		cache.write(jarFile, new ClasspathContents(Arrays.asList(
+				new ClasspathClass("com.example.Library", "Library", "com.example", false, false)),
+				Arrays.asList("com.example")));
+		Files.write(jarFile.toPath(), "a different jar".getBytes(StandardCharsets.UTF_8));
+		Assertions.assertNull(cache.read(jarFile));
+	}
+
+	@Test
+	void testWriteAndReadJDK() throws IOException {
+		Path javaHome = testRoot.resolve("jdk");
+		Files.createDirectories(javaHome.resolve("lib"));
+		Files.write(javaHome.resolve("lib").resolve("modules"), "not really modules".getBytes(StandardCharsets.UTF_8));
+		cache.writeJDK(javaHome.toString(), "17.0.1", new ClasspathContents(
+				Arrays.asList(new ClasspathClass("java.lang.String", "String", "java.lang", false, false)),
+				Arrays.asList("java.lang")));
+
+		ClasspathContents cachedContents = cache.readJDK(javaHome.toString(), "17.0.1");
+		Assertions.assertNotNull(cachedContents);
+		Assertions.assertEquals(1, cachedContents.getClasses().size());
+		Assertions.assertEquals("java.lang.String", cachedContents.getClasses().get(0).getName());
+		// the jars are cached separately
+		Assertions.assertNull(cache.read(jarFile));
+		// a different version of the JDK is scanned again
+		Assertions.assertNull(cache.readJDK(javaHome.toString(), "17.0.2"));
+		Files.write(javaHome.resolve("lib").resolve("modules"), "different modules".getBytes(StandardCharsets.UTF_8));
+		Assertions.assertNull(cache.readJDK(javaHome.toString(), "17.0.1"));
+	}
+
+	@Test
+	void testPruneKeepsCurrentFiles() {
+		cache.write(jarFile, new ClasspathContents(Arrays.asList(
+				new ClasspathClass("com.example.Library", "Library", "com.example", false, false)),
+				Arrays.asList("com.example")));
+		cache.prune();
+		Assertions.assertNotNull(cache.read(jarFile));
+	}
+
+	@Test
+	void testPruneAfterJarDeleted() throws IOException {
+		cache.write(jarFile, new ClasspathContents(Arrays.asList(
+				new ClasspathClass("com.example.Library", "Library", "com.example", false, false)),
+				Arrays.asList("com.example")));
+		Files.delete(jarFile.toPath());
+		cache.prune();
+		Assertions.assertEquals(0, countCacheFiles());
+	}
+
+	@Test
+	void testPruneAfterJarChanged() throws IOException {
+		cache.write(jarFile, new ClasspathContents(Arrays.asList(
+				new ClasspathClass("com.example.Library", "Library", "com.example", false, false)),
+				Arrays.asList("com.example")));
+		Files.write(jarFile.toPath(), "a different jar".getBytes(StandardCharsets.UTF_8));
+		cache.prune();
+		Assertions.assertEquals(0, countCacheFiles());
+	}
+
+	@Test
+	void testPruneInvalidFile() throws IOException {
+		Files.createDirectories(testRoot.resolve("cache"));
+		Files.write(testRoot.resolve("cache").resolve("unknown.idx"), "not an index".getBytes(StandardCharsets.UTF_8));
+		cache.prune();
+		Assertions.assertEquals(0, countCacheFiles());
+	}
+
+	private long countCacheFiles() throws IOException {
+		try (Stream<Path> paths = Files.list(testRoot.resolve("cache"))) {
+			return paths.count();
+		}
+	}
+
+	private void deleteTestRoot() throws IOException {
+		if (!Files.exists(testRoot)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(testRoot)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.classpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ClasspathIndexTests {
+	private ClasspathIndex index;
+
+	@BeforeEach
+	void setup() {
+		ClasspathClass[] classes = new ClasspathClass[] {
+				new ClasspathClass("java.util.HashMap", "HashMap", "java.util", false, false),
+				new ClasspathClass("java.util.HashSet", "HashSet", "java.util", false, false),
+				new ClasspathClass("java.util.Map", "Map", "java.util", true, false),
+				new ClasspathClass("java.util.concurrent.ConcurrentHashMap", "ConcurrentHashMap",
+						"java.util.concurrent", false, false),
+				new ClasspathClass("java.lang.String", "String", "java.lang", false, false), };
+		String[] packageNames = new String[] { "java.util.concurrent", "java.lang", "java.util" };
+		index = new ClasspathIndex(classes, packageNames);
+	}
+
+	@Test
+	void testForEachClassBySimpleName() {
+		List<String> names = new ArrayList<>();
+		index.forEachClassBySimpleName("Hash", classpathClass -> names.add(classpathClass.getName()));
+		Assertions.assertEquals(Arrays.asList("java.util.HashMap", "java.util.HashSet"), names);
+	}
+
+	@Test
+	void testForEachClassBySimpleNameStops() {
+		List<String> names = new ArrayList<>();
+		index.forEachClassBySimpleName("", classpathClass -> {
+			names.add(classpathClass.getName());
+			return names.size() < 2;
+		});
+		Assertions.assertEquals(Arrays.asList("java.util.concurrent.ConcurrentHashMap", "java.util.HashMap"), names);
+	}
+
+	@Test
+	void testForEachClassByInitials() {
+		List<String> names = new ArrayList<>();
+		index.forEachClassByInitials("HM", classpathClass -> names.add(classpathClass.getName()));
+		Assertions.assertEquals(Arrays.asList("java.util.HashMap"), names);
+		Assertions.assertTrue(ClasspathIndex.isInitials("HM"));
+		Assertions.assertFalse(ClasspathIndex.isInitials("Hash"));
+	}
+
+	@Test
+	void testForEachSubpackage() {
+		List<String> names = new ArrayList<>();
+		index.forEachSubpackage("", "", packageName -> names.add(packageName));
+		Assertions.assertEquals(Arrays.asList("java"), names);
+		names.clear();
+		index.forEachSubpackage("java", "", packageName -> names.add(packageName));
+		Assertions.assertEquals(Arrays.asList("java.lang", "java.util"), names);
+		names.clear();
+		index.forEachSubpackage("java", "u", packageName -> names.add(packageName));
+		Assertions.assertEquals(Arrays.asList("java.util"), names);
+		names.clear();
+		index.forEachSubpackage("javax", "", packageName -> names.add(packageName));
+		Assertions.assertEquals(Arrays.asList(), names);
+	}
+
+	@Test
+	void testForEachClassInPackage() {
+		List<String> names = new ArrayList<>();
+		index.forEachClassInPackage("java.util", "", classpathClass -> names.add(classpathClass.getName()));
+		Assertions.assertEquals(Arrays.asList("java.util.HashMap", "java.util.HashSet", "java.util.Map"), names);
+		names.clear();
+		index.forEachClassInPackage("java.util", "HashM", classpathClass -> names.add(classpathClass.getName()));
+		Assertions.assertEquals(Arrays.asList("java.util.HashMap"), names);
+		names.clear();
+		index.forEachClassInPackage("java", "", classpathClass -> names.add(classpathClass.getName()));
+		Assertions.assertEquals(Arrays.asList(), names);
+	}
+}
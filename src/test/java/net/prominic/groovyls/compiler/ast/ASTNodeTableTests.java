@@ -0,0 +1,107 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ASTNodeTableTests {
+	private static final URI URI_A = URI.create("file:///A.groovy");
+	private static final URI URI_B = URI.create("file:///B.groovy");
+
+	@Test
+	void testVisitAgainInCopy() {
+		ASTNodeTable table = new ASTNodeTable();
+		ASTNode oldParent = new ConstantExpression("parent");
+		ASTNode oldChild = new ConstantExpression("child");
+		visit(table, URI_A, oldParent, oldChild);
+
+		ASTNodeTable copy = table.copy();
+		ASTNode newParent = new ConstantExpression("parent");
+		ASTNode newChild = new ConstantExpression("child");
+		visit(copy, URI_A, newParent, newChild);
+
+		int oldChildId = table.getId(oldChild);
+		Assertions.assertNotEquals(-1, oldChildId);
+		Assertions.assertSame(oldParent, table.getNode(table.getParentId(oldChildId)));
+		Assertions.assertEquals(-1, table.getId(newChild));
+
+		int newChildId = copy.getId(newChild);
+		Assertions.assertNotEquals(-1, newChildId);
+		Assertions.assertSame(newParent, copy.getNode(copy.getParentId(newChildId)));
+		Assertions.assertEquals(URI_A, copy.getURI(newChildId));
+		Assertions.assertEquals(-1, copy.getId(oldChild));
+	}
+
+	@Test
+	void testOtherFilesAfterManyCopies() {
+		ASTNodeTable table = new ASTNodeTable();
+		ASTNode parentA = new ConstantExpression("parentA");
+		ASTNode childA = new ConstantExpression("childA");
+		visit(table, URI_A, parentA, childA);
+		ASTNodeTable previous = null;
+		ASTNode previousChildB = null;
+		for (int i = 0; i < 100; i++) {
+			previous = table;
+			table = table.copy();
+			ASTNode childB = new ConstantExpression("childB" + i);
+			visit(table, URI_B, new ConstantExpression("parentB" + i), childB);
+			if (previousChildB != null) {
+				Assertions.assertNotEquals(-1, previous.getId(previousChildB));
+				Assertions.assertEquals(-1, table.getId(previousChildB));
+			}
+			previousChildB = childB;
+		}
+		int childId = table.getId(childA);
+		Assertions.assertNotEquals(-1, childId);
+		Assertions.assertSame(parentA, table.getNode(table.getParentId(childId)));
+		Assertions.assertEquals(URI_A, table.getURI(childId));
+	}
+
+	@Test
+	void testRemove() {
+		ASTNodeTable table = new ASTNodeTable();
+		ASTNode parentA = new ConstantExpression("parentA");
+		ASTNode childA = new ConstantExpression("childA");
+		visit(table, URI_A, parentA, childA);
+		ASTNode parentB = new ConstantExpression("parentB");
+		ASTNode childB = new ConstantExpression("childB");
+		visit(table, URI_B, parentB, childB);
+
+		ASTNodeTable copy = table.copy();
+		copy.remove(URI_A);
+		Assertions.assertEquals(-1, copy.getId(childA));
+		Assertions.assertNotEquals(-1, table.getId(childA));
+		int childBId = copy.getId(childB);
+		Assertions.assertNotEquals(-1, childBId);
+		Assertions.assertSame(parentB, copy.getNode(copy.getParentId(childBId)));
+	}
+
+	private void visit(ASTNodeTable table, URI uri, ASTNode parent, ASTNode child) {
+		table.startURI(uri);
+		int parentId = table.add(parent, -1, uri, true);
+		table.add(child, parentId, uri, true);
+		table.endURI(uri);
+	}
+}
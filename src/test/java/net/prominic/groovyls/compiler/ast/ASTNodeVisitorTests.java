@@ -0,0 +1,104 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
+
+class ASTNodeVisitorTests {
+	private static final URI URI_DEFINITION = URI.create("file:///Definition.groovy");
+	private static final URI URI_REFERENCE = URI.create("file:///Reference.groovy");
+	private static final String CONTENTS_REFERENCE = "class Reference {\n"
+			+ "  public Reference() {\n"
+			+ "    new Definition().definedMethod()\n"
+			+ "  }\n"
+			+ "}";
+
+	@Test
+	void testReferencesAfterDefinitionVisitedAgain() {
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compile("class Definition {\n  public void definedMethod() {}\n}"));
+
+		// only the file of the definition is visited again, so the other file
+		// still references the old nodes
+		ASTNodeVisitor newVisitor = visitor.copy();
+		newVisitor.visitCompilationUnit(compile("class Definition {\n\n  public void definedMethod() {}\n}"),
+				Collections.singleton(URI_DEFINITION));
+
+		MethodNode oldMethod = visitor.getClassNode("Definition").getMethods("definedMethod").get(0);
+		MethodNode newMethod = newVisitor.getClassNode("Definition").getMethods("definedMethod").get(0);
+		Assertions.assertNotSame(oldMethod, newMethod);
+		List<ASTNode> references = newVisitor.getReferences(newMethod);
+		Assertions.assertTrue(references.contains(newMethod));
+		Assertions.assertFalse(references.contains(oldMethod));
+		Assertions.assertTrue(references.stream().anyMatch(node -> URI_REFERENCE.equals(newVisitor.getURI(node))));
+	}
+
+	@Test
+	void testMemberTableAfterUnresolvedClass() {
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compile("class Definition {\n  public void definedMethod() {}\n}"));
+
+		// an unresolved node has no members of its own
+		ClassNode unresolvedClassNode = ClassHelper.make("Definition");
+		Assertions.assertFalse(unresolvedClassNode.isResolved());
+		Assertions.assertEquals(1, visitor.getMemberTable(unresolvedClassNode).getMethods(false, "defined").size());
+		ClassMemberTable memberTable = visitor.getMemberTable(visitor.getClassNode("Definition"));
+		Assertions.assertEquals(1, memberTable.getMethods(false, "defined").size());
+	}
+
+	@Test
+	void testMemberTableOfUnknownClassNotCached() {
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(compile("class Definition {}"));
+
+		ClassNode unresolvedClassNode = ClassHelper.make("Unknown");
+		Assertions.assertNotSame(visitor.getMemberTable(unresolvedClassNode),
+				visitor.getMemberTable(unresolvedClassNode));
+	}
+
+	private CompilationUnit compile(String definitionContents) {
+		CompilerConfiguration config = new CompilerConfiguration();
+		CompilationUnit unit = new CompilationUnit(config);
+		addSource(unit, URI_DEFINITION, definitionContents);
+		addSource(unit, URI_REFERENCE, CONTENTS_REFERENCE);
+		unit.compile(Phases.CANONICALIZATION);
+		return unit;
+	}
+
+	private void addSource(CompilationUnit unit, URI uri, String contents) {
+		unit.addSource(new SourceUnit(uri.getPath(), new StringReaderSourceWithURI(contents, uri, unit.getConfiguration()),
+				unit.getConfiguration(), unit.getClassLoader(), unit.getErrorCollector()));
+	}
+}
@@ -0,0 +1,135 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.compiler.ast;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.io.StringReaderSourceWithURI;
+
+class SourceDependencyGraphTests {
+	private static final URI URI_DEFINITION = URI.create("file:///Definition.groovy");
+	private static final URI URI_ANNOTATION = URI.create("file:///Uses.groovy");
+	private static final URI URI_DEPENDENT = URI.create("file:///Dependent.groovy");
+
+	@Test
+	void testSuperClass() {
+		assertDependent("class Definition {}", "class Dependent extends Definition {}");
+	}
+
+	@Test
+	void testUnrelated() {
+		SourceDependencyGraph graph = createGraph("class Definition {}", "class Dependent {}");
+		Assertions.assertFalse(graph.getDependentURIs(Collections.singleton(URI_DEFINITION)).contains(URI_DEPENDENT));
+	}
+
+	@Test
+	void testGenericsTypeArgument() {
+		assertDependent("class Definition {}", "class Dependent {\n  List<Definition> field\n}");
+	}
+
+	@Test
+	void testGenericsTypeParameterBound() {
+		assertDependent("class Definition {}", "class Dependent<T extends Definition> {}");
+	}
+
+	@Test
+	void testMethodGenericsTypeParameterBound() {
+		assertDependent("class Definition {}", "class Dependent {\n  public <T extends Definition> void method() {}\n}");
+	}
+
+	@Test
+	void testGenericsWildcardBound() {
+		assertDependent("class Definition {}", "class Dependent {\n  List<? super Definition> field\n}");
+	}
+
+	@Test
+	void testAnnotation() {
+		assertDependent("@interface Definition {}", "@Definition\nclass Dependent {}");
+	}
+
+	@Test
+	void testMethodAnnotation() {
+		assertDependent("@interface Definition {}", "class Dependent {\n  @Definition\n  public void method() {}\n}");
+	}
+
+	@Test
+	void testAnnotationClassLiteral() {
+		assertDependent("class Definition {}", "@Uses(Definition)\nclass Dependent {}");
+	}
+
+	@Test
+	void testAnnotationClassLiteralInList() {
+		assertDependent("class Definition {}", "@Uses([String, Definition])\nclass Dependent {}");
+	}
+
+	@Test
+	void testThrows() {
+		assertDependent("class Definition extends Exception {}",
+				"class Dependent {\n  public void method() throws Definition {}\n}");
+	}
+
+	@Test
+	void testParameterType() {
+		assertDependent("class Definition {}", "class Dependent {\n  public void method(Definition parameter) {}\n}");
+	}
+
+	@Test
+	void testParameterAnnotation() {
+		assertDependent("@interface Definition {}",
+				"class Dependent {\n  public void method(@Definition String parameter) {}\n}");
+	}
+
+	private void assertDependent(String definitionContents, String dependentContents) {
+		SourceDependencyGraph graph = createGraph(definitionContents, dependentContents);
+		Set<URI> dependentURIs = graph.getDependentURIs(Collections.singleton(URI_DEFINITION));
+		Assertions.assertTrue(dependentURIs.contains(URI_DEPENDENT));
+		// the annotation with a class member doesn't depend on anything
+		Assertions.assertFalse(dependentURIs.contains(URI_ANNOTATION));
+	}
+
+	private SourceDependencyGraph createGraph(String definitionContents, String dependentContents) {
+		CompilationUnit unit = new CompilationUnit(new CompilerConfiguration());
+		addSource(unit, URI_DEFINITION, definitionContents);
+		addSource(unit, URI_ANNOTATION, "@interface Uses {\n  Class[] value()\n}");
+		addSource(unit, URI_DEPENDENT, dependentContents);
+		unit.compile(Phases.CANONICALIZATION);
+		ASTNodeVisitor visitor = new ASTNodeVisitor();
+		visitor.visitCompilationUnit(unit);
+		SourceDependencyGraph graph = new SourceDependencyGraph();
+		graph.update(URI_DEFINITION, visitor);
+		graph.update(URI_ANNOTATION, visitor);
+		graph.update(URI_DEPENDENT, visitor);
+		return graph;
+	}
+
+	private void addSource(CompilationUnit unit, URI uri, String contents) {
+		unit.addSource(new SourceUnit(uri.getPath(), new StringReaderSourceWithURI(contents, uri, unit.getConfiguration()),
+				unit.getConfiguration(), unit.getClassLoader(), unit.getErrorCollector()));
+	}
+}
@@ -0,0 +1,135 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.codehaus.groovy.control.Phases;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.compiler.control.GroovyLSCompilationUnit;
+import net.prominic.groovyls.util.FileContentsTracker;
+
+class CompilationUnitFactoryTests {
+	private static final String PATH_TEST_ROOT = "./build/test_compilation_unit_factory/";
+
+	private Path testRoot;
+	private Path workspaceRoot;
+	private CompilationUnitFactory factory;
+	private FileContentsTracker fileContentsTracker;
+
+	@BeforeEach
+	void setup() throws IOException {
+		testRoot = Paths.get(System.getProperty("user.dir")).resolve(PATH_TEST_ROOT).normalize();
+		deleteTestRoot();
+		workspaceRoot = testRoot.resolve("workspace");
+		Files.createDirectories(workspaceRoot);
+		factory = new CompilationUnitFactory();
+		fileContentsTracker = new FileContentsTracker();
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		deleteTestRoot();
+		testRoot = null;
+		workspaceRoot = null;
+		factory = null;
+		fileContentsTracker = null;
+	}
+
+	@Test
+	void testCreatedDirectoryWithFileOutsideWorkspace() throws IOException {
+		URI existingURI = writeFile(workspaceRoot.resolve("Existing.groovy"), "class Existing {}");
+		factory.create(workspaceRoot, fileContentsTracker);
+
+		URI outsideURI = writeFile(testRoot.resolve("Outside.groovy"), "class Outside {}");
+		URI createdURI = writeFile(workspaceRoot.resolve("created").resolve("Created.groovy"), "class Created {}");
+		Set<URI> changedURIs = new LinkedHashSet<>();
+		changedURIs.add(outsideURI);
+		changedURIs.add(workspaceRoot.resolve("created").toUri());
+		Set<URI> affectedURIs = factory.updateWorkspaceURIs(workspaceRoot, changedURIs);
+		Assertions.assertTrue(affectedURIs.contains(outsideURI));
+		Assertions.assertTrue(affectedURIs.contains(createdURI));
+
+		// the file outside of the workspace is affected, but it isn't indexed
+		factory.invalidateCompilationUnit();
+		Set<URI> sourceURIs = getSourceURIs(factory.create(workspaceRoot, fileContentsTracker));
+		Assertions.assertTrue(sourceURIs.contains(existingURI));
+		Assertions.assertTrue(sourceURIs.contains(createdURI));
+		Assertions.assertFalse(sourceURIs.contains(outsideURI));
+	}
+
+	@Test
+	void testDeletedFile() throws IOException {
+		URI deletedURI = writeFile(workspaceRoot.resolve("Deleted.groovy"), "class Deleted {}");
+		URI existingURI = writeFile(workspaceRoot.resolve("Existing.groovy"), "class Existing {}");
+		factory.create(workspaceRoot, fileContentsTracker);
+
+		Files.delete(Paths.get(deletedURI));
+		Set<URI> changedURIs = new HashSet<>();
+		changedURIs.add(deletedURI);
+		Set<URI> affectedURIs = factory.updateWorkspaceURIs(workspaceRoot, changedURIs);
+		Assertions.assertEquals(changedURIs, affectedURIs);
+
+		factory.invalidateCompilationUnit();
+		Set<URI> sourceURIs = getSourceURIs(factory.create(workspaceRoot, fileContentsTracker));
+		Assertions.assertTrue(sourceURIs.contains(existingURI));
+		Assertions.assertFalse(sourceURIs.contains(deletedURI));
+	}
+
+	private URI writeFile(Path filePath, String contents) throws IOException {
+		Files.createDirectories(filePath.getParent());
+		Files.write(filePath, contents.getBytes(StandardCharsets.UTF_8));
+		return filePath.toUri();
+	}
+
+	private Set<URI> getSourceURIs(GroovyLSCompilationUnit compilationUnit) {
+		// sources are queued until the compile starts
+		compilationUnit.compile(Phases.CONVERSION);
+		Set<URI> result = new HashSet<>();
+		compilationUnit.iterator().forEachRemaining(sourceUnit -> {
+			result.add(sourceUnit.getSource().getURI());
+		});
+		return result;
+	}
+
+	private void deleteTestRoot() throws IOException {
+		if (!Files.exists(testRoot)) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(testRoot)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompileSchedulerTests {
+	/**
+	 * Runs the scheduled tasks only when the test asks, instead of waiting
+	 * for their delay.
+	 */
+	private static class ManualExecutor extends ScheduledThreadPoolExecutor {
+		private class ManualFuture extends FutureTask<Void> implements ScheduledFuture<Void> {
+			private final long delay;
+
+			public ManualFuture(Runnable command, long delay) {
+				super(command, null);
+				this.delay = delay;
+			}
+
+			@Override
+			public long getDelay(TimeUnit unit) {
+				return unit.convert(delay, TimeUnit.MILLISECONDS);
+			}
+
+			@Override
+			public int compareTo(Delayed other) {
+				return Long.compare(delay, other.getDelay(TimeUnit.MILLISECONDS));
+			}
+		}
+
+		private List<ManualFuture> scheduled = new ArrayList<>();
+
+		public ManualExecutor() {
+			super(1);
+		}
+
+		@Override
+		public synchronized ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+			ManualFuture future = new ManualFuture(command, unit.toMillis(delay));
+			scheduled.add(future);
+			return future;
+		}
+
+		public synchronized List<ManualFuture> getScheduled() {
+			return new ArrayList<>(scheduled);
+		}
+
+		public void runScheduled() {
+			List<ManualFuture> futures = null;
+			synchronized (this) {
+				futures = scheduled;
+				scheduled = new ArrayList<>();
+			}
+			// cancelled tasks don't run
+			futures.forEach(FutureTask::run);
+		}
+	}
+
+	private List<List<URI>> compiles;
+	private ManualExecutor executor;
+	private CompileScheduler scheduler;
+
+	@BeforeEach
+	void setup() {
+		compiles = Collections.synchronizedList(new ArrayList<>());
+		executor = new ManualExecutor();
+		scheduler = new CompileScheduler((Set<URI> uris, CancelChecker cancelChecker) -> {
+			compiles.add(new ArrayList<>(uris));
+		}, executor);
+	}
+
+	@AfterEach
+	void tearDown() {
+		scheduler.shutdown();
+		scheduler = null;
+		executor = null;
+		compiles = null;
+	}
+
+	@Test
+	void testScheduleCoalescesChanges() {
+		URI uri1 = URI.create("file:///Test1.groovy");
+		URI uri2 = URI.create("file:///Test2.groovy");
+		scheduler.setQuietPeriod(100);
+		scheduler.schedule(uri1);
+		scheduler.schedule(uri2);
+		scheduler.schedule(uri1);
+		// each change restarts the quiet period
+		List<? extends ScheduledFuture<?>> scheduled = executor.getScheduled();
+		Assertions.assertEquals(3, scheduled.size());
+		Assertions.assertTrue(scheduled.get(0).isCancelled());
+		Assertions.assertTrue(scheduled.get(1).isCancelled());
+		Assertions.assertFalse(scheduled.get(2).isCancelled());
+		Assertions.assertEquals(100, scheduled.get(2).getDelay(TimeUnit.MILLISECONDS));
+		Assertions.assertEquals(0, compiles.size());
+
+		executor.runScheduled();
+		Assertions.assertEquals(1, compiles.size());
+		Assertions.assertEquals(Arrays.asList(uri2, uri1), compiles.get(0));
+		Assertions.assertFalse(scheduler.hasPendingURIs());
+	}
+
+	@Test
+	void testFlushCompilesImmediately() {
+		URI uri = URI.create("file:///Test.groovy");
+		scheduler.setQuietPeriod(60000);
+		scheduler.schedule(uri);
+		scheduler.flush();
+		Assertions.assertEquals(1, compiles.size());
+		Assertions.assertEquals(Collections.singletonList(uri), compiles.get(0));
+		Assertions.assertFalse(scheduler.hasPendingURIs());
+		// the compile that was scheduled for later was cancelled
+		Assertions.assertTrue(executor.getScheduled().get(0).isCancelled());
+		executor.runScheduled();
+		Assertions.assertEquals(1, compiles.size());
+	}
+
+	@Test
+	void testFlushWithoutChanges() {
+		scheduler.flush();
+		Assertions.assertEquals(0, compiles.size());
+	}
+}
@@ -23,10 +23,12 @@ import java.net.URI;
 import java.util.Collections;
 
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
 import org.eclipse.lsp4j.TextDocumentItem;
 import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
 import org.junit.jupiter.api.AfterEach;
@@ -100,4 +102,25 @@ class FileContentsTrackerTests {
 		tracker.didChange(changeParams);
 		Assertions.assertEquals("hello\nwaffles", tracker.getContents(URI.create("file.txt")));
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testVersion() {
+		URI uri = URI.create("file.txt");
+		Assertions.assertNull(tracker.getVersion(uri));
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		openParams.setTextDocument(new TextDocumentItem("file.txt", "plaintext", 1, "hello world"));
+		tracker.didOpen(openParams);
+		Assertions.assertEquals(1, tracker.getVersion(uri));
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		changeParams.setTextDocument(new VersionedTextDocumentIdentifier("file.txt", 2));
+		TextDocumentContentChangeEvent changeEvent = new TextDocumentContentChangeEvent();
+		changeEvent.setText("hi there");
+		changeParams.setContentChanges(Collections.singletonList(changeEvent));
+		tracker.didChange(changeParams);
+		Assertions.assertEquals(2, tracker.getVersion(uri));
+		DidCloseTextDocumentParams closeParams = new DidCloseTextDocumentParams();
+		closeParams.setTextDocument(new TextDocumentIdentifier("file.txt"));
+		tracker.didClose(closeParams);
+		Assertions.assertNull(tracker.getVersion(uri));
+	}
+}
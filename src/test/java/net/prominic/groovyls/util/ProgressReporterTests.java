@@ -0,0 +1,116 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.WorkDoneProgressBegin;
+import org.eclipse.lsp4j.WorkDoneProgressCreateParams;
+import org.eclipse.lsp4j.WorkDoneProgressEnd;
+import org.eclipse.lsp4j.WorkDoneProgressReport;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProgressReporterTests {
+	private CompletableFuture<Void> createFuture;
+	private int createCount;
+	private List<Object> notifications;
+	private LanguageClient client;
+
+	@BeforeEach
+	void setup() {
+		createFuture = new CompletableFuture<>();
+		createCount = 0;
+		notifications = new ArrayList<>();
+		client = new LanguageClient() {
+			@Override
+			public void telemetryEvent(Object object) {
+			}
+
+			@Override
+			public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+				return null;
+			}
+
+			@Override
+			public void showMessage(MessageParams messageParams) {
+			}
+
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+			}
+
+			@Override
+			public void logMessage(MessageParams message) {
+			}
+
+			@Override
+			public CompletableFuture<Void> createProgress(WorkDoneProgressCreateParams params) {
+				createCount++;
+				return createFuture;
+			}
+
+			@Override
+			public void notifyProgress(ProgressParams params) {
+				notifications.add(params.getValue().getLeft());
+			}
+		};
+	}
+
+	@Test
+	void testWaitsUntilClientCanBegin() {
+		boolean[] canBegin = new boolean[1];
+		ProgressReporter progress = new ProgressReporter(client, "token", "Title", () -> canBegin[0]);
+		progress.report(10);
+		Assertions.assertEquals(0, createCount);
+		canBegin[0] = true;
+		progress.update();
+		Assertions.assertEquals(1, createCount);
+		createFuture.complete(null);
+		progress.report(50);
+		progress.end();
+		Assertions.assertEquals(3, notifications.size());
+		Assertions.assertEquals(10, ((WorkDoneProgressBegin) notifications.get(0)).getPercentage());
+		Assertions.assertEquals(50, ((WorkDoneProgressReport) notifications.get(1)).getPercentage());
+		Assertions.assertTrue(notifications.get(2) instanceof WorkDoneProgressEnd);
+	}
+
+	@Test
+	void testDoesNotWaitForClient() {
+		ProgressReporter progress = new ProgressReporter(client, "token", "Title", () -> true);
+		progress.report(0);
+		progress.report(50);
+		// the client never responded, so nothing is reported
+		progress.end();
+		Assertions.assertEquals(1, createCount);
+		Assertions.assertEquals(0, notifications.size());
+		createFuture.complete(null);
+		Assertions.assertEquals(0, notifications.size());
+	}
+}
@@ -0,0 +1,82 @@
+////////////////////////////////////////////////////////////////////////////////
+// Copyright 2022 Prominic.NET, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License
+//
+// Author: Prominic.NET, Inc.
+// No warranty of merchantability or fitness of any kind.
+// Use this software at your own risk.
+////////////////////////////////////////////////////////////////////////////////
+package net.prominic.groovyls.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import net.prominic.groovyls.util.RequestDispatcher.Priority;
+
+class RequestDispatcherTests {
+	private RequestDispatcher dispatcher;
+
+	@BeforeEach
+	void setup() {
+		dispatcher = new RequestDispatcher("test-request", 1);
+	}
+
+	@AfterEach
+	void tearDown() {
+		dispatcher.shutdown();
+		dispatcher = null;
+	}
+
+	@Test
+	void testHigherPriorityRunsFirst() throws Exception {
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(4);
+		// keep the only thread busy until everything is queued
+		dispatcher.execute(Priority.NORMAL, () -> {
+			try {
+				blocked.await();
+			} catch (InterruptedException e) {
+			}
+		});
+		dispatcher.execute(Priority.LOW, () -> {
+			order.add("references");
+			finished.countDown();
+		});
+		dispatcher.execute(Priority.NORMAL, () -> {
+			order.add("definition");
+			finished.countDown();
+		});
+		dispatcher.execute(Priority.HIGH, () -> {
+			order.add("completion");
+			finished.countDown();
+		});
+		dispatcher.execute(Priority.HIGH, () -> {
+			order.add("hover");
+			finished.countDown();
+		});
+		blocked.countDown();
+		Assertions.assertTrue(finished.await(5, TimeUnit.SECONDS));
+		Assertions.assertEquals(Arrays.asList("completion", "hover", "definition", "references"), order);
+	}
+}
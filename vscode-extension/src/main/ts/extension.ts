@@ -208,6 +208,7 @@ function startLanguageServer() {
           documentSelector: [{ scheme: "file", language: "groovy" }],
           synchronize: {
             configurationSection: "groovy",
+            fileEvents: vscode.workspace.createFileSystemWatcher("**/*.groovy"),
           },
           initializationOptions: {},
           middleware: {